@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * This is the part of a node shared by the AVL trees: its height, its
+ * balance factor and its children. It also holds the rotations and the
+ * rebalancing done after an insert or a remove, so that the trees only keep
+ * their own keys and values. A tree keeping more data in its nodes does so
+ * by overriding the hook, and a tree counting its rotations passes a counter.
+ * 
+ * @author Qing Bai
+ */
+abstract class AvlNode<N extends AvlNode<N>> {
+	
+	/**
+	 * This is the height of this node in the tree.
+	 */
+	int height;
+	
+	/**
+	 * This is the balance factor of this node.
+	 */
+	int balanceFactor;
+	
+	/**
+	 * This is left child of this node.
+	 */
+	N leftChild;
+	
+	/**
+	 * This is right child of this node.
+	 */
+	N rightChild;
+	
+	/**
+	 * This is a hook called after height and balance factor of this node
+	 * were updated, for data kept from the children of this node.
+	 */
+	void updated() {
+	}
+	
+	/**
+	 * This makes sure a path stack can hold every node from the root of a
+	 * tree down to a new leaf. The stack has to be empty.
+	 * 
+	 * @param path is the path stack
+	 * @param root is the root of the tree
+	 * @return the path stack, or a bigger one if it was too small
+	 */
+	static <N extends AvlNode<N>> N[] ensurePath(N[] path, N root) {
+		int needed = root == null ? 1 : root.height + 2;
+		
+		if (path.length < needed) {
+			path = Arrays.copyOf(path, Math.max(needed, path.length * 2));
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * This updates and rebalances the nodes of a path stack from the bottom
+	 * up, linking each rebalanced subtree back into its parent, and empties
+	 * the stack.
+	 * 
+	 * @param path is the path stack, starting at the root of the tree
+	 * @param size is the number of nodes in the path stack
+	 * @param root is the root of the tree
+	 * @return the root of the rebalanced tree
+	 */
+	static <N extends AvlNode<N>> N rebalancePath(N[] path, int size, N root) {
+		return rebalancePath(path, size, root, null);
+	}
+	
+	/**
+	 * This updates and rebalances the nodes of a path stack from the bottom
+	 * up like rebalancePath, counting the rebalancing in a given counter.
+	 * 
+	 * @param path is the path stack, starting at the root of the tree
+	 * @param size is the number of nodes in the path stack
+	 * @param root is the root of the tree
+	 * @param counter is the counter, or null
+	 * @return the root of the rebalanced tree
+	 */
+	static <N extends AvlNode<N>> N rebalancePath(N[] path, int size, N root,
+			Rotations counter) {
+		for (int i = size - 1; i >= 0; i--) {
+			N node = path[i];
+			updateNode(node);
+			N balanced = rebalance(node, counter);
+			
+			if (balanced != node) {
+				if (i == 0) {
+					root = balanced;
+				} else if (path[i - 1].leftChild == node) {
+					path[i - 1].leftChild = balanced;
+				} else {
+					path[i - 1].rightChild = balanced;
+				}
+			}
+			
+			path[i] = null;
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * This updates balance factor and height of a given node.
+	 * 
+	 * @param node is the given node
+	 */
+	static <N extends AvlNode<N>> void updateNode(N node) {
+		int leftHeight = node.leftChild == null ? -1 : node.leftChild.height;
+		int rightHeight = node.rightChild == null ? -1 : node.rightChild.height;
+		node.height = Math.max(leftHeight, rightHeight) + 1;
+		node.balanceFactor = leftHeight - rightHeight;
+		node.updated();
+	}
+	
+	/**
+	 * This rotates the tree to the left.
+	 * 
+	 * @param root is the root of the tree
+	 * @return the root of rotated tree
+	 */
+	static <N extends AvlNode<N>> N rotateLeft(N root) {
+		N temp = root.rightChild;
+		root.rightChild = temp.leftChild;
+		updateNode(root);
+		temp.leftChild = root;
+		updateNode(temp);
+		return temp;
+	}
+	
+	/**
+	 * This rotates the tree to the right.
+	 * 
+	 * @param root is the root of the tree
+	 * @return the root of rotated tree
+	 */
+	static <N extends AvlNode<N>> N rotateRight(N root) {
+		N temp = root.leftChild;
+		root.leftChild = temp.rightChild;
+		updateNode(root);
+		temp.rightChild = root;
+		updateNode(temp);
+		return temp;
+	}
+	
+	/**
+	 * This rebalances a given tree.
+	 * 
+	 * @param root is the root of the given tree
+	 * @return root of a balanced tree.
+	 */
+	static <N extends AvlNode<N>> N rebalance(N root) {
+		return rebalance(root, null);
+	}
+	
+	/**
+	 * This rebalances a given tree, counting the rebalancing in a given
+	 * counter.
+	 * 
+	 * @param root is the root of the given tree
+	 * @param counter is the counter, or null
+	 * @return root of a balanced tree.
+	 */
+	static <N extends AvlNode<N>> N rebalance(N root, Rotations counter) {
+		int rotations = 0;
+		
+		if (root.balanceFactor < -1) {
+			if (root.rightChild.balanceFactor > 0) {
+				root.rightChild = rotateRight(root.rightChild);
+				rotations++;
+			}
+			
+			root = rotateLeft(root);
+			rotations++;
+		} else if (root.balanceFactor > 1) {
+			if (root.leftChild.balanceFactor < 0) {
+				root.leftChild = rotateLeft(root.leftChild);
+				rotations++;
+			}
+			
+			root = rotateRight(root);
+			rotations++;
+		}
+		
+		if (counter != null) {
+			counter.count(rotations);
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * This is a class counting the rebalancing done on a tree.
+	 */
+	static final class Rotations {
+		
+		/**
+		 * This records number of single rotations made by rebalancing.
+		 */
+		long singleRotations;
+		
+		/**
+		 * This records number of double rotations made by rebalancing.
+		 */
+		long doubleRotations;
+		
+		/**
+		 * This records number of times a node was checked for rebalancing.
+		 */
+		long rebalances;
+		
+		/**
+		 * This counts one check of a node for rebalancing.
+		 * 
+		 * @param rotations is the number of rotations made, 0, 1 or 2
+		 */
+		void count(int rotations) {
+			rebalances++;
+			
+			if (rotations == 1) {
+				singleRotations++;
+			} else if (rotations == 2) {
+				doubleRotations++;
+			}
+		}
+	}
+}
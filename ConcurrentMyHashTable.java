@@ -0,0 +1,441 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This is a thread-safe hash table with the API of MyHashTable. Keys are
+ * split into stripes by their hash, and each stripe is a linear probing table
+ * with its own lock. Writes lock only their stripe, while reads take no lock
+ * at all: slots are read with acquire semantics and a slot, once holding a
+ * key, never becomes empty again, so a reader always sees a complete probe
+ * chain.
+ * 
+ * @author Qing Bai
+ */
+public class ConcurrentMyHashTable<K, V> {
+	
+	/**
+	 * This is the number of stripes used when the caller doesn't give one.
+	 */
+	private static final int DEFAULT_STRIPES = 16;
+	
+	/**
+	 * This is the maximum fill ratio of a stripe before it grows.
+	 */
+	private static final double LOAD_FACTOR = 0.75;
+	
+	/**
+	 * This reads and writes elements of key and value arrays with memory
+	 * ordering.
+	 */
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+	
+	/**
+	 * This is an array of stripes.
+	 */
+	private final Stripe[] myStripes;
+	
+	/**
+	 * This is the number of hash bits used to pick a stripe.
+	 */
+	private final int myStripeBits;
+	
+	/**
+	 * This builds a hash table with a given initial capacity.
+	 * 
+	 * @param theCapacity is the given capacity
+	 */
+	public ConcurrentMyHashTable(final int theCapacity) {
+		this(theCapacity, DEFAULT_STRIPES);
+	}
+	
+	/**
+	 * This builds a hash table with a given initial capacity and number of
+	 * stripes. More stripes let more writers run at the same time.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @param theStripes is the number of stripes, rounded up to a power of two
+	 */
+	public ConcurrentMyHashTable(final int theCapacity, final int theStripes) {
+		if (theCapacity < 1 || theStripes < 1 || theStripes > 1 << 16) {
+			throw new IllegalArgumentException();
+		}
+		
+		final int stripes = powerOfTwo(theStripes);
+		myStripeBits = Integer.numberOfTrailingZeros(stripes);
+		myStripes = new Stripe[stripes];
+		
+		for (int i = 0; i < stripes; i++) {
+			myStripes[i] = new Stripe(powerOfTwo(Math.max(2, theCapacity / stripes)));
+		}
+	}
+	
+	/**
+	 * This adds or updates a new value for a given key.
+	 * 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 */
+	public void put(final K theKey, final V theValue) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		final int h = spread(theKey.hashCode());
+		stripe(h).put(h, theKey, theValue);
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, null is returned. It never blocks.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int h = spread(theKey.hashCode());
+		return (V) stripe(h).get(h, theKey);
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final K theKey) {
+		return get(theKey) != null;
+	}
+	
+	/**
+	 * This builds a set of keys. Keys put while the set is built may or may
+	 * not be in it.
+	 * 
+	 * @return the set of keys
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<K> keySet() {
+		final Set<K> set = new HashSet<K>();
+		Table table;
+		Object key;
+		
+		for (Stripe stripe : myStripes) {
+			table = stripe.myTable;
+			
+			for (int i = 0; i < table.myKeys.length; i++) {
+				key = SLOT.getAcquire(table.myKeys, i);
+				
+				if (key != null) {
+					set.add((K) key);
+				}
+			}
+		}
+		
+		return set;
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table, summed over
+	 * all stripes. Each stripe is locked in turn while its counters are read.
+	 */
+	public void stats() {
+		long entryNum = 0;
+		long capacity = 0;
+		long probSum = 0;
+		long[] histogram = new long[0];
+		
+		for (Stripe stripe : myStripes) {
+			synchronized (stripe) {
+				entryNum += stripe.mySize;
+				capacity += stripe.myTable.myKeys.length;
+				probSum += stripe.myProbSum;
+				
+				if (stripe.myHistogram.length > histogram.length) {
+					histogram = Arrays.copyOf(histogram, stripe.myHistogram.length);
+				}
+				
+				for (int i = 0; i < stripe.myHistogram.length; i++) {
+					histogram[i] += stripe.myHistogram[i];
+				}
+			}
+		}
+		
+		int probMax = histogram.length;
+		
+		while (probMax > 0 && histogram[probMax - 1] == 0) {
+			probMax--;
+		}
+		
+		System.out.println("Hash Table Stats");
+		System.out.println("================================");
+		System.out.printf("Number of Entries: %d\n", entryNum);
+		System.out.printf("Number of Buckets: %d\n", capacity);
+		System.out.printf("Number of Stripes: %d\n", myStripes.length);
+		System.out.print("Histogram of Probes: ");
+		System.out.println(Arrays.toString(Arrays.copyOf(histogram, probMax)));
+		System.out.printf("Fill Percentage: %.6f%%\n", entryNum * 100.0 / capacity);
+		System.out.printf("Max Linear Prob: %d\n", probMax);
+		System.out.printf("Average Linear Prob: %.6f\n", probSum * 1.0 / entryNum);
+	}
+	
+	/**
+	 * This finds the stripe of a given hash. Stripes use the highest bits of
+	 * the hash and slots use the lowest ones, so keys of one stripe still
+	 * spread over all its slots.
+	 * 
+	 * @param theHash is the spread hash code of a key
+	 * @return the stripe for the key
+	 */
+	private Stripe stripe(final int theHash) {
+		return myStripeBits == 0 ? myStripes[0] : myStripes[theHash >>> (32 - myStripeBits)];
+	}
+	
+	/**
+	 * This rounds a given number up to a power of two.
+	 * 
+	 * @param theNumber is the given number
+	 * @return the smallest power of two not less than the number
+	 */
+	private static int powerOfTwo(final int theNumber) {
+		return theNumber == 1 ? 1 : Integer.highestOneBit(theNumber - 1) << 1;
+	}
+	
+	/**
+	 * This mixes all bits of a hash code, using the finalizer of MurmurHash3.
+	 * 
+	 * @param theHash is the hash code
+	 * @return the mixed hash code
+	 */
+	private static int spread(final int theHash) {
+		int h = theHash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * This is a private class for the arrays of a stripe. A stripe replaces
+	 * its table as a whole when it grows.
+	 */
+	private static final class Table {
+		
+		/**
+		 * This is an array used to store keys.
+		 */
+		private final Object[] myKeys;
+		
+		/**
+		 * This is an array used to store values, at the same index as their
+		 * keys.
+		 */
+		private final Object[] myValues;
+		
+		/**
+		 * This is the size of the arrays minus one.
+		 */
+		private final int myMask;
+		
+		/**
+		 * This creates empty arrays of a given capacity.
+		 * 
+		 * @param theCapacity is the capacity, a power of two
+		 */
+		private Table(final int theCapacity) {
+			myKeys = new Object[theCapacity];
+			myValues = new Object[theCapacity];
+			myMask = theCapacity - 1;
+		}
+	}
+	
+	/**
+	 * This is a private class for one stripe. Writers hold the stripe's lock;
+	 * readers only follow the volatile table reference. Lookups record no
+	 * statistics, so the counters are plain fields guarded by the lock.
+	 */
+	private static final class Stripe {
+		
+		/**
+		 * This is the current table of this stripe.
+		 */
+		private volatile Table myTable;
+		
+		/**
+		 * This records sum of probe lengthes of all entries of this stripe.
+		 */
+		private long myProbSum;
+		
+		/**
+		 * This is histogram of probes of this stripe, where element i counts
+		 * the entries placed after i + 1 probes.
+		 */
+		private long[] myHistogram;
+		
+		/**
+		 * This records number of entries, guarded by the lock of this stripe.
+		 */
+		private int mySize;
+		
+		/**
+		 * This creates an empty stripe with a given capacity.
+		 * 
+		 * @param theCapacity is the capacity, a power of two
+		 */
+		private Stripe(final int theCapacity) {
+			myTable = new Table(theCapacity);
+			myProbSum = 0;
+			myHistogram = new long[8];
+			mySize = 0;
+		}
+		
+		/**
+		 * This searches a key without locking.
+		 * 
+		 * @param theHash is the spread hash code of the key
+		 * @param theKey is the key
+		 * @return the value of the key or null if it doesn't exist
+		 */
+		private Object get(final int theHash, final Object theKey) {
+			final Table table = myTable;
+			int i = theHash & table.myMask;
+			Object key = SLOT.getAcquire(table.myKeys, i);
+			
+			while (key != null) {
+				if (key.equals(theKey)) {
+					return SLOT.getAcquire(table.myValues, i);
+				}
+				
+				i = (i + 1) & table.myMask;
+				key = SLOT.getAcquire(table.myKeys, i);
+			}
+			
+			return null;
+		}
+		
+		/**
+		 * This adds or updates a value for a key while holding the lock of
+		 * this stripe.
+		 * 
+		 * @param theHash is the spread hash code of the key
+		 * @param theKey is the key
+		 * @param theValue is the value
+		 */
+		private synchronized void put(final int theHash, final Object theKey,
+				final Object theValue) {
+			Table table = myTable;
+			int i = find(table, theHash, theKey);
+			
+			if (table.myKeys[i] != null) {
+				SLOT.setRelease(table.myValues, i, theValue);
+			} else {
+				// the table grows before the new key goes in, so a table seen
+				// by readers always has an empty slot to end their probes
+				if (mySize + 1 > table.myKeys.length * LOAD_FACTOR) {
+					table = resize(table);
+					i = find(table, theHash, theKey);
+				}
+				
+				// the value is written before the key, so a reader finding the
+				// key also finds its value
+				SLOT.setRelease(table.myValues, i, theValue);
+				SLOT.setRelease(table.myKeys, i, theKey);
+				recordStats(((i - theHash) & table.myMask) + 1);
+				mySize++;
+			}
+		}
+		
+		/**
+		 * This searches a key in a table while holding the lock of this
+		 * stripe.
+		 * 
+		 * @param theTable is the table
+		 * @param theHash is the spread hash code of the key
+		 * @param theKey is the key
+		 * @return index of the key, or of the empty slot ending its probe
+		 */
+		private int find(final Table theTable, final int theHash, final Object theKey) {
+			int i = theHash & theTable.myMask;
+			
+			while (theTable.myKeys[i] != null && !theTable.myKeys[i].equals(theKey)) {
+				i = (i + 1) & theTable.myMask;
+			}
+			
+			return i;
+		}
+		
+		/**
+		 * This copies all entries into a table twice as large and publishes
+		 * it. Readers still holding the old table keep seeing a consistent,
+		 * complete copy.
+		 * 
+		 * @param theTable is the current table
+		 * @return the new table
+		 */
+		private Table resize(final Table theTable) {
+			if (theTable.myKeys.length > 1 << 29) {
+				throw new IllegalStateException("Hash table is too large to grow");
+			}
+			
+			final Table table = new Table(theTable.myKeys.length * 2);
+			long[] histogram = new long[myHistogram.length];
+			long probSum = 0;
+			Object key;
+			int i;
+			int probTimes;
+			
+			for (int j = 0; j < theTable.myKeys.length; j++) {
+				key = theTable.myKeys[j];
+				
+				if (key != null) {
+					i = spread(key.hashCode()) & table.myMask;
+					probTimes = 1;
+					
+					while (table.myKeys[i] != null) {
+						i = (i + 1) & table.myMask;
+						probTimes++;
+					}
+					
+					table.myKeys[i] = key;
+					table.myValues[i] = theTable.myValues[j];
+					probSum += probTimes;
+					
+					if (probTimes > histogram.length) {
+						histogram = Arrays.copyOf(histogram, Math.max(probTimes, histogram.length * 2));
+					}
+					
+					histogram[probTimes - 1]++;
+				}
+			}
+			
+			myTable = table;
+			myHistogram = histogram;
+			myProbSum = probSum;
+			return table;
+		}
+		
+		/**
+		 * This records and updates sum of probes and histrogram of probes for
+		 * a key placed in this stripe, while holding the lock of this stripe.
+		 * 
+		 * @param theProbeTimes is number of probes spent on finding a location
+		 * for the key
+		 */
+		private void recordStats(final int theProbeTimes) {
+			if (theProbeTimes > myHistogram.length) {
+				myHistogram = Arrays.copyOf(myHistogram,
+						Math.max(theProbeTimes, myHistogram.length * 2));
+			}
+			
+			myHistogram[theProbeTimes - 1]++;
+			myProbSum += theProbeTimes;
+		}
+	}
+}
@@ -0,0 +1,438 @@
+import java.util.Arrays;
+
+/**
+ * This is an immutable hash table built by MyHashTable.freeze. Its keys are
+ * placed with a minimal perfect hash of the CHD (compress, hash and
+ * displace) kind: keys are split into small buckets, and each bucket keeps a
+ * displacement picking a hash function that sends all of its keys to free
+ * slots. Every slot holds exactly one entry, and a lookup reads the
+ * displacement of its bucket and then a single slot.
+ * 
+ * Keys whose hash codes equal the hash code of another key can't be told
+ * apart by any function of the hash code, so they are kept in a small
+ * overflow array sorted by hash code. It is searched only when the slot holds
+ * a different key with the same hash code, so a missing key costs no more
+ * than one slot read.
+ * 
+ * All fields are final and never change after construction, so a table can
+ * be shared by many threads without synchronization.
+ * 
+ * @author Qing Bai
+ */
+public class FrozenHashTable<K, V> {
+	
+	/**
+	 * This is the average number of keys per bucket.
+	 */
+	private static final int BUCKET_SIZE = 3;
+	
+	/**
+	 * This is the number of displacements tried for a bucket before the
+	 * buckets are made smaller and the build starts over.
+	 */
+	private static final int MAX_DISPLACEMENT = 1 << 20;
+	
+	/**
+	 * This is the number of slots.
+	 */
+	private final int mySlotNum;
+	
+	/**
+	 * This is an array holding the key of slot i at index 2i and its value at
+	 * index 2i + 1, so a lookup finds both in the same cache line.
+	 */
+	private final Object[] myEntries;
+	
+	/**
+	 * This is the displacement of every bucket. A negative displacement d
+	 * sends the single key of its bucket straight to slot ~d.
+	 */
+	private final int[] myDisplacements;
+	
+	/**
+	 * This is the keys sharing their hash code with another key, laid out
+	 * like the entries of the slots and sorted by hash code.
+	 */
+	private final Object[] myOverflow;
+	
+	/**
+	 * This is the hash codes of the overflow keys, in the same order.
+	 */
+	private final int[] myOverflowHashes;
+	
+	/**
+	 * This builds a frozen table from given entries.
+	 * 
+	 * @param theKeys is the keys, all different
+	 * @param theValues is the values, at the same index as their keys
+	 */
+	FrozenHashTable(final Object[] theKeys, final Object[] theValues) {
+		final int[] hashes = new int[theKeys.length];
+		final long[] order = new long[theKeys.length];
+		
+		for (int i = 0; i < theKeys.length; i++) {
+			hashes[i] = theKeys[i].hashCode();
+			order[i] = (long) hashes[i] << 32 | i;
+		}
+		
+		// sorting by hash code brings keys with equal hash codes together
+		Arrays.sort(order);
+		final int[] unique = new int[theKeys.length];
+		final int[] duplicate = new int[theKeys.length];
+		int uniqueNum = 0;
+		int duplicateNum = 0;
+		
+		for (int i = 0; i < order.length; i++) {
+			if (i > 0 && order[i] >>> 32 == order[i - 1] >>> 32) {
+				duplicate[duplicateNum++] = (int) order[i];
+			} else {
+				unique[uniqueNum++] = (int) order[i];
+			}
+		}
+		
+		mySlotNum = uniqueNum;
+		myEntries = new Object[uniqueNum * 2];
+		myOverflow = new Object[duplicateNum * 2];
+		myOverflowHashes = new int[duplicateNum];
+		
+		// the duplicates come out of the sorted order sorted by hash code
+		for (int i = 0; i < duplicateNum; i++) {
+			myOverflow[2 * i] = theKeys[duplicate[i]];
+			myOverflow[2 * i + 1] = theValues[duplicate[i]];
+			myOverflowHashes[i] = hashes[duplicate[i]];
+		}
+		
+		int[] displacements = null;
+		
+		for (int bucketSize = BUCKET_SIZE; displacements == null; bucketSize = bucketSize / 2) {
+			displacements = place(hashes, unique, uniqueNum, Math.max(1, bucketSize));
+		}
+		
+		myDisplacements = displacements;
+		int slot;
+		
+		for (int i = 0; i < uniqueNum; i++) {
+			slot = slot(hashes[unique[i]]);
+			myEntries[2 * slot] = theKeys[unique[i]];
+			myEntries[2 * slot + 1] = theValues[unique[i]];
+		}
+	}
+	
+	/**
+	 * This finds a displacement for every bucket so that all keys land in
+	 * different slots. Buckets are handled from the largest down while most
+	 * slots are still free, and buckets of one key are simply given the
+	 * slots left over.
+	 * 
+	 * @param theHashes is the hash codes of all keys
+	 * @param theKeys is the indexes of the keys to place
+	 * @param theKeyNum is the number of keys to place
+	 * @param theBucketSize is the average number of keys per bucket
+	 * @return the displacements, or null if a bucket couldn't be placed
+	 */
+	private static int[] place(final int[] theHashes, final int[] theKeys, final int theKeyNum,
+			final int theBucketSize) {
+		final int bucketNum = Math.max(1, (theKeyNum + theBucketSize - 1) / theBucketSize);
+		final int[] displacements = new int[bucketNum];
+		final int[] starts = new int[bucketNum + 1];
+		final int[] members = new int[theKeyNum];
+		
+		// a counting sort groups the hash codes by bucket
+		for (int i = 0; i < theKeyNum; i++) {
+			starts[bucket(theHashes[theKeys[i]], bucketNum) + 1]++;
+		}
+		
+		int maxSize = 0;
+		
+		for (int b = 0; b < bucketNum; b++) {
+			maxSize = Math.max(maxSize, starts[b + 1]);
+			starts[b + 1] += starts[b];
+		}
+		
+		final int[] filled = Arrays.copyOf(starts, bucketNum);
+		int b;
+		
+		for (int i = 0; i < theKeyNum; i++) {
+			b = bucket(theHashes[theKeys[i]], bucketNum);
+			members[filled[b]++] = theHashes[theKeys[i]];
+		}
+		
+		// a second counting sort orders the buckets by size, largest first
+		final int[] sizeStarts = new int[maxSize + 2];
+		
+		for (b = 0; b < bucketNum; b++) {
+			sizeStarts[maxSize - (starts[b + 1] - starts[b]) + 1]++;
+		}
+		
+		for (int s = 0; s <= maxSize; s++) {
+			sizeStarts[s + 1] += sizeStarts[s];
+		}
+		
+		final int[] buckets = new int[bucketNum];
+		
+		for (b = 0; b < bucketNum; b++) {
+			buckets[sizeStarts[maxSize - (starts[b + 1] - starts[b])]++] = b;
+		}
+		
+		final boolean[] taken = new boolean[theKeyNum];
+		final int[] slots = new int[maxSize];
+		int free = 0;
+		int size;
+		int d;
+		
+		for (int i = 0; i < bucketNum; i++) {
+			b = buckets[i];
+			size = starts[b + 1] - starts[b];
+			
+			if (size == 0) {
+				break;
+			} else if (size == 1) {
+				while (taken[free]) {
+					free++;
+				}
+				
+				taken[free] = true;
+				displacements[b] = ~free;
+				continue;
+			}
+			
+			for (d = 0; !fits(members, starts[b], size, d, taken, slots); d++) {
+				if (d == MAX_DISPLACEMENT) {
+					return null;
+				}
+			}
+			
+			for (int j = 0; j < size; j++) {
+				taken[slots[j]] = true;
+			}
+			
+			displacements[b] = d;
+		}
+		
+		return displacements;
+	}
+	
+	/**
+	 * This checks whether or not a displacement sends all keys of a bucket to
+	 * different free slots.
+	 * 
+	 * @param theMembers is the hash codes grouped by bucket
+	 * @param theStart is where the bucket starts in the members
+	 * @param theSize is the number of keys in the bucket
+	 * @param theDisplacement is the displacement tried
+	 * @param theTaken tells which slots are already taken
+	 * @param theSlots is filled with the slots of the keys
+	 * @return true if the displacement fits. Otherwise, false.
+	 */
+	private static boolean fits(final int[] theMembers, final int theStart, final int theSize,
+			final int theDisplacement, final boolean[] theTaken, final int[] theSlots) {
+		for (int j = 0; j < theSize; j++) {
+			theSlots[j] = slot(theMembers[theStart + j], theDisplacement, theTaken.length);
+			
+			if (theTaken[theSlots[j]]) {
+				return false;
+			}
+			
+			for (int k = 0; k < j; k++) {
+				if (theSlots[k] == theSlots[j]) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final K theKey) {
+		if (theKey == null || mySlotNum == 0) {
+			return null;
+		}
+		
+		final int h = theKey.hashCode();
+		final int slot = slot(h);
+		final Object key = myEntries[2 * slot];
+		
+		// the slot is the only place the key can be, unless it holds another
+		// key with the same hash code
+		if (key.equals(theKey)) {
+			return (V) myEntries[2 * slot + 1];
+		} else if (myOverflowHashes.length == 0 || key.hashCode() != h) {
+			return null;
+		}
+		
+		return getOverflow(h, theKey);
+	}
+	
+	/**
+	 * This searches a given key among the overflow keys, by a binary search
+	 * for its hash code.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	private V getOverflow(final int theHash, final K theKey) {
+		int i = Arrays.binarySearch(myOverflowHashes, theHash);
+		
+		if (i < 0) {
+			return null;
+		}
+		
+		while (i > 0 && myOverflowHashes[i - 1] == theHash) {
+			i--;
+		}
+		
+		for (; i < myOverflowHashes.length && myOverflowHashes[i] == theHash; i++) {
+			if (myOverflow[2 * i].equals(theKey)) {
+				return (V) myOverflow[2 * i + 1];
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This returns the value for a given key, or a given default value if the
+	 * key doesn't exist.
+	 * 
+	 * @param theKey is the given key
+	 * @param theDefault is the default value
+	 * @return the value for the key or the default value
+	 */
+	public V getOrDefault(final K theKey, final V theDefault) {
+		final V value = get(theKey);
+		return value != null ? value : theDefault;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final K theKey) {
+		return get(theKey) != null;
+	}
+	
+	/**
+	 * This finds out the number of entries in this hash table.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return mySlotNum + myOverflow.length / 2;
+	}
+	
+	/**
+	 * This finds out the slot of a key with a given hash code.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @return index of the slot
+	 */
+	private int slot(final int theHash) {
+		final int d = myDisplacements[bucket(theHash, myDisplacements.length)];
+		return d < 0 ? ~d : slot(theHash, d, mySlotNum);
+	}
+	
+	/**
+	 * This determines the bucket of a key with a given hash code.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theBucketNum is the number of buckets
+	 * @return index of the bucket
+	 */
+	private static int bucket(final int theHash, final int theBucketNum) {
+		return reduce(mix(theHash), theBucketNum);
+	}
+	
+	/**
+	 * This determines the slot a given displacement sends a key to.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theDisplacement is the displacement
+	 * @param theSlotNum is the number of slots
+	 * @return index of the slot
+	 */
+	private static int slot(final int theHash, final int theDisplacement, final int theSlotNum) {
+		return reduce(mix(theHash ^ mix(theDisplacement + 0x9e3779b9)), theSlotNum);
+	}
+	
+	/**
+	 * This maps a mixed hash code onto a range by multiplying instead of
+	 * dividing.
+	 * 
+	 * @param theHash is the mixed hash code
+	 * @param theRange is the size of the range
+	 * @return a number from 0 to theRange - 1
+	 */
+	private static int reduce(final int theHash, final int theRange) {
+		return (int) (((theHash & 0xffffffffL) * theRange) >>> 32);
+	}
+	
+	/**
+	 * This mixes all bits of a hash code, using the finalizer of MurmurHash3.
+	 * 
+	 * @param theHash is the hash code
+	 * @return the mixed hash code
+	 */
+	private static int mix(final int theHash) {
+		int h = theHash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table.
+	 */
+	public void stats() {
+		System.out.println("Hash Table Stats");
+		System.out.println("================================");
+		System.out.printf("Number of Entries: %d\n", size());
+		System.out.printf("Number of Buckets: %d\n", mySlotNum);
+		System.out.printf("Number of Displacements: %d\n", myDisplacements.length);
+		System.out.printf("Overflow Entries: %d\n", myOverflow.length / 2);
+		System.out.printf("Bits per Entry: %.6f\n",
+				myDisplacements.length * 32.0 / Math.max(1, mySlotNum));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		result.append("[");
+		
+		Object[] entries;
+		int j;
+		
+		for (int i = 0; i < size(); i++) {
+			entries = i < mySlotNum ? myEntries : myOverflow;
+			j = i < mySlotNum ? 2 * i : 2 * (i - mySlotNum);
+			
+			if (i > 0) {
+				result.append(", ");
+			}
+			
+			result.append("(");
+			result.append(entries[j]);
+			result.append(", ");
+			result.append(entries[j + 1]);
+			result.append(")");
+		}
+		
+		result.append("]");
+		return result.toString();
+	}
+}
@@ -0,0 +1,277 @@
+import java.util.Arrays;
+
+/**
+ * This is a self-balancing binary search tree mapping int keys to object
+ * values, kept in the order of the keys. It is the primitive counterpart of
+ * MyTreeMap: keys are compared as plain ints, so nothing is boxed. Each key is
+ * kept at most once, and putting a key that is already in the map replaces
+ * its value.
+ * 
+ * @author Qing Bai
+ */
+public class IntObjTreeMap<V> {
+	
+	/**
+	 * This is the root of this map.
+	 */
+	private Node<V> root;
+	
+	/**
+	 * This is the number of entries in this map.
+	 */
+	private int size;
+	
+	/**
+	 * This is a stack of the nodes on the path from the root, reused by put
+	 * and remove.
+	 */
+	private Node<V>[] path;
+	
+	/**
+	 * This is a constructor of this map.
+	 */
+	@SuppressWarnings("unchecked")
+	public IntObjTreeMap() {
+		this.root = null;
+		this.size = 0;
+		this.path = (Node<V>[]) new Node<?>[8];
+	}
+	
+	/**
+	 * This maps a given key to a given value. If the key is already in this
+	 * map, only its value is replaced.
+	 * 
+	 * @param key is the given key
+	 * @param value is the given value
+	 * @return the old value of the key, or null if the key was not in the map
+	 */
+	public V put(int key, V value) {
+		Node<V> node = this.root;
+		int size = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null) {
+			if (key == node.key) {
+				V old = node.value;
+				node.value = value;
+				Arrays.fill(path, 0, size, null);
+				return old;
+			}
+			
+			path[size++] = node;
+			node = key < node.key ? node.leftChild : node.rightChild;
+		}
+		
+		node = new Node<V>(key, value);
+		
+		if (size == 0) {
+			this.root = node;
+		} else if (key < path[size - 1].key) {
+			path[size - 1].leftChild = node;
+		} else {
+			path[size - 1].rightChild = node;
+		}
+		
+		this.size++;
+		this.root = AvlNode.rebalancePath(path, size, this.root);
+		return null;
+	}
+	
+	/**
+	 * This finds the value of a given key.
+	 * 
+	 * @param key is the given key
+	 * @return the value of the key, or null if the key is not in this map
+	 */
+	public V get(int key) {
+		Node<V> node = find(key);
+		return node == null ? null : node.value;
+	}
+	
+	/**
+	 * This checks whether or not a given key is in this map.
+	 * 
+	 * @param key is the given key
+	 * @return true if the key is in the map, otherwise, false
+	 */
+	public boolean containsKey(int key) {
+		return find(key) != null;
+	}
+	
+	/**
+	 * This removes a given key and its value from this map if the key exists.
+	 * A node with two children takes the entry of the maximum key of its left
+	 * subtree, and the node that held that entry is removed instead.
+	 * 
+	 * @param key is the given key
+	 * @return the value of the key, or null if the key was not in the map
+	 */
+	public V remove(int key) {
+		Node<V> node = this.root;
+		int size = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null && node.key != key) {
+			path[size++] = node;
+			node = key < node.key ? node.leftChild : node.rightChild;
+		}
+		
+		if (node == null) {
+			Arrays.fill(path, 0, size, null);
+			return null;
+		}
+		
+		V old = node.value;
+		
+		if (node.leftChild != null && node.rightChild != null) {
+			Node<V> target = node;
+			path[size++] = target;
+			node = target.leftChild;
+			
+			while (node.rightChild != null) {
+				path[size++] = node;
+				node = node.rightChild;
+			}
+			
+			target.key = node.key;
+			target.value = node.value;
+		}
+		
+		Node<V> child = node.leftChild != null ? node.leftChild : node.rightChild;
+		
+		if (size == 0) {
+			this.root = child;
+		} else if (path[size - 1].leftChild == node) {
+			path[size - 1].leftChild = child;
+		} else {
+			path[size - 1].rightChild = child;
+		}
+		
+		this.size--;
+		this.root = AvlNode.rebalancePath(path, size, this.root);
+		return old;
+	}
+	
+	/**
+	 * This finds out the number of entries in this map.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * This finds the depth of this map.
+	 * 
+	 * @return an integer for the depth of this map.
+	 */
+	public int depth() {
+		return this.root == null ? 0 : this.root.height + 1;
+	}
+	
+	/**
+	 * This passes every entry to a given action in the order of the keys.
+	 * 
+	 * @param action is the action taking each key and value
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> action) {
+		Node<V>[] stack = (Node<V>[]) new Node<?>[this.root == null ? 0 : this.root.height + 1];
+		Node<V> node = this.root;
+		int size = 0;
+		
+		while (node != null || size > 0) {
+			while (node != null) {
+				stack[size++] = node;
+				node = node.leftChild;
+			}
+			
+			node = stack[--size];
+			action.accept(node.key, node.value);
+			node = node.rightChild;
+		}
+	}
+	
+	/**
+	 * This returns the entries in this map in the order of the keys.
+	 * 
+	 * @return a String containing the entries
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		
+		forEach((key, value) -> {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			
+			result.append("(").append(key).append(", ").append(value).append(")");
+		});
+		
+		result.append("]");
+		return result.toString();
+	}
+	
+	/**
+	 * This finds the node of a given key.
+	 * 
+	 * @param key is the given key
+	 * @return the node, or null if the key is not in this map
+	 */
+	private Node<V> find(int key) {
+		Node<V> node = this.root;
+		
+		while (node != null) {
+			if (node.key == key) {
+				return node;
+			}
+			
+			node = key < node.key ? node.leftChild : node.rightChild;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This is an action taking the int key and the value of an entry, so that
+	 * forEach passes keys without boxing them.
+	 */
+	public interface EntryConsumer<V> {
+		
+		/**
+		 * This takes one entry.
+		 * 
+		 * @param key is the key of the entry
+		 * @param value is the value of the entry
+		 */
+		void accept(int key, V value);
+	}
+	
+	/**
+	 * This is a private class used for creating nodes of this map.
+	 */
+	private static class Node<V> extends AvlNode<Node<V>> {
+		
+		/**
+		 * This is a key saved in this node.
+		 */
+		private int key;
+		
+		/**
+		 * This is the value of the key.
+		 */
+		private V value;
+		
+		/**
+		 * This is a constructor of this node.
+		 * 
+		 * @param key is a key stored in the node
+		 * @param value is the value of the key
+		 */
+		private Node(int key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,393 @@
+import java.util.Arrays;
+
+/**
+ * This is a hash table mapping long keys to long values. It is the
+ * primitive counterpart of MyHashTable: keys and values live in plain arrays, so
+ * put and get never box and never allocate. A key of 0 marks an empty slot,
+ * and the entry for key 0 itself, if any, is kept in separate fields.
+ * 
+ * @author Qing Bai
+ */
+public class LongLongHashTable {
+	
+	/**
+	 * This is the maximum fill ratio before the arrays grow.
+	 */
+	private static final double LOAD_FACTOR = 0.75;
+	
+	/**
+	 * This is an array used to store keys in this hash table.
+	 */
+	private long[] myKeys;
+	
+	/**
+	 * This is an array used to store values, at the same index as their keys.
+	 */
+	private long[] myValues;
+	
+	/**
+	 * This is the size of the arrays minus one, used to mask indexes.
+	 */
+	private int myMask;
+	
+	/**
+	 * This tells whether or not key 0 is in this hash table.
+	 */
+	private boolean myHasZeroKey;
+	
+	/**
+	 * This is the value of key 0.
+	 */
+	private long myZeroValue;
+	
+	/**
+	 * This is the value returned by get and remove for a missing key.
+	 */
+	private final long myNoValue;
+	
+	/**
+	 * This records number of entries.
+	 */
+	private int myEntryNum;
+	
+	/**
+	 * This is histogram of probes, where element i counts the entries placed
+	 * after i + 1 probes. Key 0 isn't counted since it needs no probe.
+	 */
+	private int[] myHistogram;
+	
+	/**
+	 * This records the maxmium probe length spent on one entry.
+	 */
+	private int myProbMax;
+	
+	/**
+	 * This records sum of probe lengthes of all entries.
+	 */
+	private long myProbSum;
+	
+	/**
+	 * This builds a hash table with a given initial capacity. get and remove
+	 * return 0 for missing keys.
+	 * 
+	 * @param theCapacity is the given capacity
+	 */
+	public LongLongHashTable(final int theCapacity) {
+		this(theCapacity, 0);
+	}
+	
+	/**
+	 * This builds a hash table with a given initial capacity and a value
+	 * returned by get and remove for missing keys.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @param theNoValue is the value returned for missing keys
+	 */
+	public LongLongHashTable(final int theCapacity, final long theNoValue) {
+		init(powerOfTwo(theCapacity));
+		myNoValue = theNoValue;
+		myHasZeroKey = false;
+		myEntryNum = 0;
+	}
+	
+	/**
+	 * This sets up empty arrays of a given capacity.
+	 * 
+	 * @param theCapacity is the capacity, a power of two
+	 */
+	private void init(final int theCapacity) {
+		myKeys = new long[theCapacity];
+		myValues = new long[theCapacity];
+		myMask = theCapacity - 1;
+		myHistogram = new int[8];
+		myProbMax = 0;
+		myProbSum = 0;
+	}
+	
+	/**
+	 * This adds or updates a new value for a given key.
+	 * 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 */
+	public void put(final long theKey, final long theValue) {
+		if (theKey == 0) {
+			if (!myHasZeroKey) {
+				myHasZeroKey = true;
+				myEntryNum++;
+			}
+			
+			myZeroValue = theValue;
+			return;
+		}
+		
+		final int i = find(theKey);
+		
+		if (myKeys[i] == theKey) {
+			myValues[i] = theValue;
+		} else {
+			myKeys[i] = theKey;
+			myValues[i] = theValue;
+			recordStats(distance(index(theKey), i) + 1);
+			myEntryNum++;
+			
+			if (myEntryNum > (myMask + 1) * LOAD_FACTOR) {
+				resize();
+			}
+		}
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, the value given for missing keys is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or the missing-key value
+	 */
+	public long get(final long theKey) {
+		if (theKey == 0) {
+			return myHasZeroKey ? myZeroValue : myNoValue;
+		}
+		
+		final int i = find(theKey);
+		return myKeys[i] == theKey ? myValues[i] : myNoValue;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final long theKey) {
+		return theKey == 0 ? myHasZeroKey : myKeys[find(theKey)] == theKey;
+	}
+	
+	/**
+	 * This removes a given key and its value from this hash table. Entries
+	 * following the removed one in its probe chain are shifted back.
+	 * 
+	 * @param theKey is the given key
+	 * @return the value removed or the missing-key value
+	 */
+	public long remove(final long theKey) {
+		long value = myNoValue;
+		
+		if (theKey == 0) {
+			if (myHasZeroKey) {
+				value = myZeroValue;
+				myHasZeroKey = false;
+				myZeroValue = 0;
+				myEntryNum--;
+			}
+			
+			return value;
+		}
+		
+		int hole = find(theKey);
+		
+		if (myKeys[hole] != theKey) {
+			return value;
+		}
+		
+		value = myValues[hole];
+		unrecordStats(distance(index(theKey), hole) + 1);
+		int i = (hole + 1) & myMask;
+		int home;
+		
+		while (myKeys[i] != 0) {
+			home = index(myKeys[i]);
+			
+			// an entry whose home slot lies between the hole and itself has to
+			// stay, otherwise it would be placed before its home slot
+			if (((i - home) & myMask) >= ((i - hole) & myMask)) {
+				unrecordStats(distance(home, i) + 1);
+				recordStats(distance(home, hole) + 1);
+				myKeys[hole] = myKeys[i];
+				myValues[hole] = myValues[i];
+				hole = i;
+			}
+			
+			i = (i + 1) & myMask;
+		}
+		
+		myKeys[hole] = 0;
+		myValues[hole] = 0;
+		myEntryNum--;
+		return value;
+	}
+	
+	/**
+	 * This finds out the number of entries in this hash table.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return myEntryNum;
+	}
+	
+	/**
+	 * This searches a given key other than 0.
+	 * 
+	 * @param theKey is the given key
+	 * @return index of the key, or of the empty slot ending its probe
+	 */
+	private int find(final long theKey) {
+		int i = index(theKey);
+		
+		while (myKeys[i] != 0 && myKeys[i] != theKey) {
+			i = (i + 1) & myMask;
+		}
+		
+		return i;
+	}
+	
+	/**
+	 * This moves all entries into arrays twice as large.
+	 */
+	private void resize() {
+		if (myMask + 1 > 1 << 29) {
+			throw new IllegalStateException("Hash table is too large to grow");
+		}
+		
+		final long[] keys = myKeys;
+		final long[] values = myValues;
+		init((myMask + 1) * 2);
+		int i;
+		
+		for (int j = 0; j < keys.length; j++) {
+			if (keys[j] != 0) {
+				i = find(keys[j]);
+				myKeys[i] = keys[j];
+				myValues[i] = values[j];
+				recordStats(distance(index(keys[j]), i) + 1);
+			}
+		}
+	}
+	
+	/**
+	 * This records and updates max probe length, sum of probes, and histrogram
+	 * of probes for a key placed in the array.
+	 * 
+	 * @param theProbeTimes is number of probes spent on finding a location for
+	 * the key
+	 */
+	private void recordStats(final int theProbeTimes) {
+		if (theProbeTimes > myHistogram.length) {
+			myHistogram = Arrays.copyOf(myHistogram,
+					Math.max(theProbeTimes, myHistogram.length * 2));
+		}
+		
+		myHistogram[theProbeTimes - 1]++;
+		myProbSum += theProbeTimes;
+		
+		if (theProbeTimes > myProbMax) {
+			myProbMax = theProbeTimes;
+		}
+	}
+	
+	/**
+	 * This takes a key that leaves its slot out of max probe length, sum of
+	 * probes, and histrogram of probes.
+	 * 
+	 * @param theProbeTimes is number of probes the key had been recorded with
+	 */
+	private void unrecordStats(final int theProbeTimes) {
+		myHistogram[theProbeTimes - 1]--;
+		myProbSum -= theProbeTimes;
+		
+		while (myProbMax > 0 && myHistogram[myProbMax - 1] == 0) {
+			myProbMax--;
+		}
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table.
+	 */
+	public void stats() {
+		final int probed = myEntryNum - (myHasZeroKey ? 1 : 0);
+		System.out.println("Hash Table Stats");
+		System.out.println("================================");
+		System.out.printf("Number of Entries: %d\n", myEntryNum);
+		System.out.printf("Number of Buckets: %d\n", myMask + 1);
+		System.out.print("Histogram of Probes: ");
+		System.out.println(Arrays.toString(Arrays.copyOf(myHistogram, myProbMax)));
+		System.out.printf("Fill Percentage: %.6f%%\n", probed * 100.0 / (myMask + 1));
+		System.out.printf("Max Linear Prob: %d\n", myProbMax);
+		System.out.printf("Average Linear Prob: %.6f\n", myProbSum * 1.0 / probed);
+	}
+	
+	/**
+	 * This determines where a given key should be placed in the array. The
+	 * key is mixed with the finalizer of MurmurHash3 first, so sequential or
+	 * strided keys still spread over the whole array.
+	 * 
+	 * @param theKey is the key
+	 * @return index of the array in where this key should be placed
+	 */
+	private int index(final long theKey) {
+		long h = theKey;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		return (int) (h ^ (h >>> 33)) & myMask;
+	}
+	
+	/**
+	 * This finds out how many slots a given index is away from a home slot
+	 * going forward in the array.
+	 * 
+	 * @param theHome is the home slot
+	 * @param theIndex is the given index
+	 * @return number of slots between them
+	 */
+	private int distance(final int theHome, final int theIndex) {
+		return (theIndex - theHome) & myMask;
+	}
+	
+	/**
+	 * This rounds a given capacity up to a power of two.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @return the smallest power of two not less than the capacity
+	 */
+	private static int powerOfTwo(final int theCapacity) {
+		if (theCapacity < 1 || theCapacity > 1 << 30) {
+			throw new IllegalArgumentException();
+		}
+		
+		return Math.max(2, Integer.highestOneBit(theCapacity - 1) << 1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		result.append("[");
+		
+		if (myHasZeroKey) {
+			result.append("(0, ");
+			result.append(myZeroValue);
+			result.append(")");
+		}
+		
+		for (int i = 0; i <= myMask; i++) {
+			if (myKeys[i] != 0) {
+				if (result.length() > 1) {
+					result.append(", ");
+				}
+				
+				result.append("(");
+				result.append(myKeys[i]);
+				result.append(", ");
+				result.append(myValues[i]);
+				result.append(")");
+			}
+		}
+		
+		result.append("]");
+		return result.toString();
+	}
+}
@@ -0,0 +1,531 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This is a read-only hash table served from a snapshot file written by
+ * MyHashTable.writeSnapshot. The file is memory mapped rather than read, so
+ * opening it takes the same short time whatever the number of entries, and
+ * pages are loaded by the operating system only when lookups touch them.
+ * Lookups only read the mapped bytes, so one table can be shared by many
+ * threads.
+ * 
+ * The file starts with a header, followed by the hash code of every slot,
+ * the offset of every slot's record (-1 for an empty slot), and the records.
+ * A record is the length of the encoded key, the key and the value. Each
+ * region is mapped in chunks of 1 GB, and records are padded so none of
+ * them crosses the end of a chunk.
+ * 
+ * @author Qing Bai
+ */
+public class MappedHashTable<K, V> {
+	
+	/**
+	 * This is the number written at the start of every snapshot file.
+	 */
+	private static final int MAGIC = 0x4D485431;
+	
+	/**
+	 * This is the size of the header in bytes.
+	 */
+	private static final int HEADER = 32;
+	
+	/**
+	 * This is the flag telling that the capacity is a power of two.
+	 */
+	private static final int POWER_OF_TWO = 1;
+	
+	/**
+	 * This is the number of bits of a position within one mapped chunk.
+	 */
+	private static final int CHUNK_BITS = 30;
+	
+	/**
+	 * This is the size of one mapped chunk in bytes.
+	 */
+	private static final int CHUNK = 1 << CHUNK_BITS;
+	
+	/**
+	 * This is the size of the buffers used to write a snapshot.
+	 */
+	private static final int WRITE_BUFFER = 1 << 16;
+	
+	/**
+	 * This is the mapped hash code of every slot.
+	 */
+	private final ByteBuffer[] myHashes;
+	
+	/**
+	 * This is the mapped record offset of every slot.
+	 */
+	private final ByteBuffer[] myOffsets;
+	
+	/**
+	 * This is the mapped records.
+	 */
+	private final ByteBuffer[] myData;
+	
+	/**
+	 * This is the number of slots.
+	 */
+	private final int myCapacity;
+	
+	/**
+	 * This tells whether or not the capacity is a power of two indexed by
+	 * masking.
+	 */
+	private final boolean myPowerOfTwo;
+	
+	/**
+	 * This records number of entries.
+	 */
+	private final int myEntryNum;
+	
+	/**
+	 * This is the codec for keys.
+	 */
+	private final Codec<K> myKeyCodec;
+	
+	/**
+	 * This is the codec for values.
+	 */
+	private final Codec<V> myValueCodec;
+	
+	/**
+	 * This opens a snapshot file as a read-only hash table.
+	 * 
+	 * @param thePath is the snapshot file
+	 * @param theKeyCodec is the codec the keys were written with
+	 * @param theValueCodec is the codec the values were written with
+	 * @throws IOException if the file can't be read or isn't a snapshot
+	 */
+	public MappedHashTable(final Path thePath, final Codec<K> theKeyCodec,
+			final Codec<V> theValueCodec) throws IOException {
+		// a mapping stays valid after its channel is closed
+		try (FileChannel channel = FileChannel.open(thePath, StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER);
+			
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+				// keep reading until the header is complete or the file ends
+			}
+			
+			if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+				throw new IOException("Not a hash table snapshot: " + thePath);
+			}
+			
+			myPowerOfTwo = (header.getInt(4) & POWER_OF_TWO) != 0;
+			myCapacity = header.getInt(8);
+			myEntryNum = header.getInt(12);
+			final long offsetStart = offsetStart(myCapacity);
+			final long dataStart = offsetStart + myCapacity * 8L;
+			myHashes = map(channel, HEADER, myCapacity * 4L);
+			myOffsets = map(channel, offsetStart, myCapacity * 8L);
+			myData = map(channel, dataStart, header.getLong(16));
+		}
+		
+		myKeyCodec = theKeyCodec;
+		myValueCodec = theValueCodec;
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	public V get(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int h = theKey.hashCode();
+		int i = MyHashTable.index(h, myCapacity, myPowerOfTwo);
+		long offset;
+		ByteBuffer chunk;
+		int position;
+		
+		// the table was written below its load factor, so an empty slot ends
+		// every probe
+		while ((offset = myOffsets[chunk(i * 8L)].getLong(position(i * 8L))) >= 0) {
+			if (myHashes[chunk(i * 4L)].getInt(position(i * 4L)) == h) {
+				chunk = myData[chunk(offset)];
+				position = position(offset);
+				
+				if (theKey.equals(myKeyCodec.read(chunk, position + 4))) {
+					return myValueCodec.read(chunk, position + 4 + chunk.getInt(position));
+				}
+			}
+			
+			i = i + 1 == myCapacity ? 0 : i + 1;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final K theKey) {
+		return get(theKey) != null;
+	}
+	
+	/**
+	 * This finds out the number of entries in this hash table.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return myEntryNum;
+	}
+	
+	/**
+	 * This writes a slot array to a snapshot file. Hash codes, offsets and
+	 * records each go through their own buffer written at its own position of
+	 * the file, so the slots are walked once and nothing else is built in
+	 * memory. The header is written last, so a file left half written is
+	 * never taken for a snapshot.
+	 * 
+	 * @param thePath is the file to write
+	 * @param theKeys is the key array
+	 * @param theValues is the value array
+	 * @param theHashes is the cached hash codes of the keys or null
+	 * @param theCapacity is the size of the arrays
+	 * @param thePowerOfTwo tells whether or not the capacity is a power of two
+	 * indexed by masking
+	 * @param theEntryNum is the number of entries
+	 * @param theKeyCodec is the codec for keys
+	 * @param theValueCodec is the codec for values
+	 * @throws IOException if the file can't be written
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> void write(final Path thePath, final Object[] theKeys,
+			final Object[] theValues, final int[] theHashes, final int theCapacity,
+			final boolean thePowerOfTwo, final int theEntryNum,
+			final Codec<? super K> theKeyCodec, final Codec<? super V> theValueCodec)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(thePath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final long offsetStart = offsetStart(theCapacity);
+			final Output hashes = new Output(channel, HEADER);
+			final Output offsets = new Output(channel, offsetStart);
+			final Output data = new Output(channel, offsetStart + theCapacity * 8L);
+			final Record record = new Record();
+			final DataOutputStream out = new DataOutputStream(record);
+			long position = 0;
+			
+			for (int i = 0; i < theCapacity; i++) {
+				if (theKeys[i] == null) {
+					hashes.putInt(0);
+					offsets.putLong(-1);
+					continue;
+				}
+				
+				record.reset();
+				out.writeInt(0);
+				theKeyCodec.write((K) theKeys[i], out);
+				record.setKeyLength();
+				theValueCodec.write((V) theValues[i], out);
+				
+				if (record.size() > CHUNK) {
+					throw new IllegalArgumentException("Entry is too large for a snapshot");
+				} else if (position(position) + record.size() > CHUNK) {
+					data.pad(CHUNK - position(position));
+					position += CHUNK - position(position);
+				}
+				
+				hashes.putInt(theHashes != null ? theHashes[i] : theKeys[i].hashCode());
+				offsets.putLong(position);
+				data.put(record);
+				position += record.size();
+			}
+			
+			hashes.flush();
+			offsets.flush();
+			data.flush();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putInt(MAGIC);
+			header.putInt(thePowerOfTwo ? POWER_OF_TWO : 0);
+			header.putInt(theCapacity);
+			header.putInt(theEntryNum);
+			header.putLong(position);
+			header.flip();
+			
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		}
+	}
+	
+	/**
+	 * This finds out where the offsets of the slots start in a snapshot of a
+	 * given capacity, rounded up to 8 bytes.
+	 * 
+	 * @param theCapacity is the number of slots
+	 * @return position of the offsets in the file
+	 */
+	private static long offsetStart(final int theCapacity) {
+		return (HEADER + theCapacity * 4L + 7) & ~7L;
+	}
+	
+	/**
+	 * This maps a region of a file in chunks.
+	 * 
+	 * @param theChannel is the channel of the file
+	 * @param theStart is the position where the region starts
+	 * @param theLength is the length of the region
+	 * @return the chunks of the region
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static ByteBuffer[] map(final FileChannel theChannel, final long theStart,
+			final long theLength) throws IOException {
+		final ByteBuffer[] chunks = new ByteBuffer[(int) ((theLength + CHUNK - 1) >>> CHUNK_BITS)];
+		
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = theChannel.map(FileChannel.MapMode.READ_ONLY,
+					theStart + ((long) i << CHUNK_BITS),
+					Math.min(CHUNK, theLength - ((long) i << CHUNK_BITS)));
+		}
+		
+		return chunks;
+	}
+	
+	/**
+	 * This finds out which chunk holds a given position of a region.
+	 * 
+	 * @param thePosition is the position in the region
+	 * @return index of the chunk
+	 */
+	private static int chunk(final long thePosition) {
+		return (int) (thePosition >>> CHUNK_BITS);
+	}
+	
+	/**
+	 * This finds out where a given position of a region lies within its chunk.
+	 * 
+	 * @param thePosition is the position in the region
+	 * @return the position within the chunk
+	 */
+	private static int position(final long thePosition) {
+		return (int) (thePosition & (CHUNK - 1));
+	}
+	
+	/**
+	 * This is a codec turning keys or values into bytes and back. A value is
+	 * written through a DataOutput and read from a given offset of a buffer
+	 * without moving the position of the buffer, so a mapped buffer can be
+	 * read by many threads at once.
+	 */
+	public interface Codec<T> {
+		
+		/**
+		 * This is a codec for strings, written as their length and UTF-8 bytes.
+		 */
+		Codec<String> STRING = new Codec<String>() {
+			public void write(final String theValue, final DataOutput theOut)
+					throws IOException {
+				final byte[] bytes = theValue.getBytes(StandardCharsets.UTF_8);
+				theOut.writeInt(bytes.length);
+				theOut.write(bytes);
+			}
+			
+			public String read(final ByteBuffer theBuffer, final int theOffset) {
+				final byte[] bytes = new byte[theBuffer.getInt(theOffset)];
+				theBuffer.get(theOffset + 4, bytes);
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+		};
+		
+		/**
+		 * This is a codec for integers.
+		 */
+		Codec<Integer> INTEGER = new Codec<Integer>() {
+			public void write(final Integer theValue, final DataOutput theOut)
+					throws IOException {
+				theOut.writeInt(theValue);
+			}
+			
+			public Integer read(final ByteBuffer theBuffer, final int theOffset) {
+				return theBuffer.getInt(theOffset);
+			}
+		};
+		
+		/**
+		 * This is a codec for longs.
+		 */
+		Codec<Long> LONG = new Codec<Long>() {
+			public void write(final Long theValue, final DataOutput theOut) throws IOException {
+				theOut.writeLong(theValue);
+			}
+			
+			public Long read(final ByteBuffer theBuffer, final int theOffset) {
+				return theBuffer.getLong(theOffset);
+			}
+		};
+		
+		/**
+		 * This writes a given value.
+		 * 
+		 * @param theValue is the given value
+		 * @param theOut is where the bytes go
+		 * @throws IOException if the bytes can't be written
+		 */
+		void write(T theValue, DataOutput theOut) throws IOException;
+		
+		/**
+		 * This reads a value at a given offset of a buffer.
+		 * 
+		 * @param theBuffer is the buffer
+		 * @param theOffset is the offset of the value
+		 * @return the value
+		 */
+		T read(ByteBuffer theBuffer, int theOffset);
+	}
+	
+	/**
+	 * This is a buffer collecting the bytes of one record, reused for every
+	 * record of a snapshot.
+	 */
+	private static class Record extends ByteArrayOutputStream {
+		
+		/**
+		 * This stores the number of bytes written after the length field as
+		 * the length of the key.
+		 */
+		private void setKeyLength() {
+			final int length = count - 4;
+			buf[0] = (byte) (length >>> 24);
+			buf[1] = (byte) (length >>> 16);
+			buf[2] = (byte) (length >>> 8);
+			buf[3] = (byte) length;
+		}
+		
+		/**
+		 * This gives the array holding the bytes of the record, which may be
+		 * longer than the record.
+		 * 
+		 * @return the array
+		 */
+		private byte[] bytes() {
+			return buf;
+		}
+	}
+	
+	/**
+	 * This is a buffered output writing to its own region of a file.
+	 */
+	private static class Output {
+		
+		/**
+		 * This is the channel of the file.
+		 */
+		private final FileChannel myChannel;
+		
+		/**
+		 * This is the buffer of bytes not written yet.
+		 */
+		private final ByteBuffer myBuffer;
+		
+		/**
+		 * This is the position in the file where the buffer goes.
+		 */
+		private long myPosition;
+		
+		/**
+		 * This creates an output starting at a given position of a file.
+		 * 
+		 * @param theChannel is the channel of the file
+		 * @param thePosition is the starting position
+		 */
+		private Output(final FileChannel theChannel, final long thePosition) {
+			myChannel = theChannel;
+			myBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+			myPosition = thePosition;
+		}
+		
+		/**
+		 * This writes an int.
+		 * 
+		 * @param theValue is the int
+		 * @throws IOException if the file can't be written
+		 */
+		private void putInt(final int theValue) throws IOException {
+			if (myBuffer.remaining() < 4) {
+				flush();
+			}
+			
+			myBuffer.putInt(theValue);
+		}
+		
+		/**
+		 * This writes a long.
+		 * 
+		 * @param theValue is the long
+		 * @throws IOException if the file can't be written
+		 */
+		private void putLong(final long theValue) throws IOException {
+			if (myBuffer.remaining() < 8) {
+				flush();
+			}
+			
+			myBuffer.putLong(theValue);
+		}
+		
+		/**
+		 * This writes the bytes of a record.
+		 * 
+		 * @param theRecord is the record
+		 * @throws IOException if the file can't be written
+		 */
+		private void put(final Record theRecord) throws IOException {
+			final byte[] bytes = theRecord.bytes();
+			int offset = 0;
+			int length;
+			
+			while (offset < theRecord.size()) {
+				if (!myBuffer.hasRemaining()) {
+					flush();
+				}
+				
+				length = Math.min(myBuffer.remaining(), theRecord.size() - offset);
+				myBuffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+		
+		/**
+		 * This skips a given number of bytes, leaving zeros in the file.
+		 * 
+		 * @param theLength is the number of bytes
+		 * @throws IOException if the file can't be written
+		 */
+		private void pad(final int theLength) throws IOException {
+			flush();
+			myPosition += theLength;
+		}
+		
+		/**
+		 * This writes the buffered bytes to the file.
+		 * 
+		 * @throws IOException if the file can't be written
+		 */
+		private void flush() throws IOException {
+			myBuffer.flip();
+			
+			while (myBuffer.hasRemaining()) {
+				myPosition += myChannel.write(myBuffer, myPosition);
+			}
+			
+			myBuffer.clear();
+		}
+	}
+}
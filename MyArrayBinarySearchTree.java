@@ -0,0 +1,412 @@
+import java.util.Arrays;
+
+/**
+ * This is a self-balancing binary search tree keeping its nodes in one int
+ * array instead of objects. A node is four ints in a row, its value, height,
+ * left child and right child, and is referred to by the index of the first
+ * one, where 0 stands for no node. So a node takes 16 bytes with no object
+ * header or references, and a step of a descent reads a single cache line.
+ * The slots of removed nodes are chained into a free list and reused by later
+ * adds, so adding and removing allocate nothing once the array is big enough.
+ * 
+ * @author Qing Bai
+ */
+public class MyArrayBinarySearchTree {
+	
+	/**
+	 * This is the number of values held when none is given.
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * This is the offset of the value in a node.
+	 */
+	private static final int VAL = 0;
+	
+	/**
+	 * This is the offset of the height in a node.
+	 */
+	private static final int HEIGHT = 1;
+	
+	/**
+	 * This is the offset of the left child in a node. For a free slot, this
+	 * is the next free slot.
+	 */
+	private static final int LEFT = 2;
+	
+	/**
+	 * This is the offset of the right child in a node.
+	 */
+	private static final int RIGHT = 3;
+	
+	/**
+	 * This is the number of ints in a node.
+	 */
+	private static final int NODE_SIZE = 4;
+	
+	/**
+	 * This is the largest number of values this BST can hold.
+	 */
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE / NODE_SIZE - 1;
+	
+	/**
+	 * These are the nodes. The node at 0 has height -1, so that a missing
+	 * child needs no check.
+	 */
+	private int[] nodes;
+	
+	/**
+	 * This is the root of this BST.
+	 */
+	private int root;
+	
+	/**
+	 * This is the number of values in this BST.
+	 */
+	private int size;
+	
+	/**
+	 * This is the index after the last slot ever handed out.
+	 */
+	private int used;
+	
+	/**
+	 * This is the first slot of the free list, or 0 if it is empty.
+	 */
+	private int free;
+	
+	/**
+	 * This is a stack of the nodes on the path from the root, reused by add
+	 * and remove.
+	 */
+	private int[] path;
+	
+	/**
+	 * This is a constructor of this BST.
+	 */
+	public MyArrayBinarySearchTree() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * This is a constructor of this BST with room for a given number of
+	 * values before the arrays grow.
+	 * 
+	 * @param capacity is the given number of values
+	 */
+	public MyArrayBinarySearchTree(int capacity) {
+		if (capacity < 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.nodes = new int[(capacity + 1) * NODE_SIZE];
+		this.nodes[HEIGHT] = -1;
+		this.root = 0;
+		this.size = 0;
+		this.used = NODE_SIZE;
+		this.free = 0;
+		this.path = new int[8];
+	}
+	
+	/**
+	 * This adds one given value into this BST.
+	 * 
+	 * @param val is the given value
+	 */
+	public void add(int val) {
+		int node = this.root;
+		int depth = 0;
+		ensurePath();
+		
+		while (node != 0) {
+			path[depth++] = node;
+			node = nodes[node + VAL] > val ? nodes[node + LEFT] : nodes[node + RIGHT];
+		}
+		
+		node = newNode(val);
+		
+		if (depth == 0) {
+			this.root = node;
+		} else if (nodes[path[depth - 1] + VAL] > val) {
+			nodes[path[depth - 1] + LEFT] = node;
+		} else {
+			nodes[path[depth - 1] + RIGHT] = node;
+		}
+		
+		this.size++;
+		rebalancePath(depth);
+	}
+	
+	/**
+	 * This removes a given value in this BST if the value exists. A node with
+	 * two children takes the maximum value of its left subtree, and the node
+	 * that held that value is removed instead.
+	 * 
+	 * @param val is the value
+	 */
+	public void remove(int val) {
+		int node = this.root;
+		int depth = 0;
+		ensurePath();
+		
+		while (node != 0 && nodes[node + VAL] != val) {
+			path[depth++] = node;
+			node = nodes[node + VAL] > val ? nodes[node + LEFT] : nodes[node + RIGHT];
+		}
+		
+		if (node == 0) {
+			return;
+		}
+		
+		if (nodes[node + LEFT] != 0 && nodes[node + RIGHT] != 0) {
+			int target = node;
+			path[depth++] = target;
+			node = nodes[target + LEFT];
+			
+			while (nodes[node + RIGHT] != 0) {
+				path[depth++] = node;
+				node = nodes[node + RIGHT];
+			}
+			
+			nodes[target + VAL] = nodes[node + VAL];
+		}
+		
+		int child = nodes[node + LEFT] != 0 ? nodes[node + LEFT] : nodes[node + RIGHT];
+		
+		if (depth == 0) {
+			this.root = child;
+		} else if (nodes[path[depth - 1] + LEFT] == node) {
+			nodes[path[depth - 1] + LEFT] = child;
+		} else {
+			nodes[path[depth - 1] + RIGHT] = child;
+		}
+		
+		nodes[node + LEFT] = this.free;
+		this.free = node;
+		this.size--;
+		rebalancePath(depth);
+	}
+	
+	/**
+	 * This checks whether or not a given value exists in the BST.
+	 * 
+	 * @param val is the given value
+	 * @return true if the value exists in the tree, otherwise, false
+	 */
+	public boolean contains(int val) {
+		int node = this.root;
+		
+		while (node != 0) {
+			if (nodes[node + VAL] == val) {
+				return true;
+			}
+			
+			node = nodes[node + VAL] > val ? nodes[node + LEFT] : nodes[node + RIGHT];
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This finds out the number of values in this BST.
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * This finds the depth of this BST.
+	 * 
+	 * @return an integer for the depth of this BST.
+	 */
+	public int depth() {
+		return nodes[this.root + HEIGHT] + 1;
+	}
+	
+	/**
+	 * This takes a slot for a new node, from the free list if it has one.
+	 * 
+	 * @param val is the value of the new node
+	 * @return the slot of the new node
+	 */
+	private int newNode(int val) {
+		int node = this.free;
+		
+		if (node != 0) {
+			this.free = nodes[node + LEFT];
+		} else {
+			if (this.used == nodes.length) {
+				grow();
+			}
+			
+			node = this.used;
+			this.used += NODE_SIZE;
+		}
+		
+		nodes[node + VAL] = val;
+		nodes[node + HEIGHT] = 0;
+		nodes[node + LEFT] = 0;
+		nodes[node + RIGHT] = 0;
+		return node;
+	}
+	
+	/**
+	 * This doubles the number of slots.
+	 */
+	private void grow() {
+		int capacity = nodes.length / NODE_SIZE - 1;
+		
+		if (capacity == MAX_CAPACITY) {
+			throw new IllegalStateException();
+		}
+		
+		capacity = (int) Math.min(MAX_CAPACITY, Math.max(2L * capacity, DEFAULT_CAPACITY));
+		nodes = Arrays.copyOf(nodes, (capacity + 1) * NODE_SIZE);
+	}
+	
+	/**
+	 * This makes sure the path stack can hold every node from the root down
+	 * to a new leaf.
+	 */
+	private void ensurePath() {
+		int needed = nodes[this.root + HEIGHT] + 2;
+		
+		if (path.length < needed) {
+			path = new int[Math.max(needed, path.length * 2)];
+		}
+	}
+	
+	/**
+	 * This updates and rebalances the nodes of the path stack from the bottom
+	 * up, linking each rebalanced subtree back into its parent.
+	 * 
+	 * @param depth is the number of nodes in the path stack
+	 */
+	private void rebalancePath(int depth) {
+		for (int i = depth - 1; i >= 0; i--) {
+			int node = path[i];
+			updateNode(node);
+			int balanced = rebalance(node);
+			
+			if (balanced != node) {
+				if (i == 0) {
+					this.root = balanced;
+				} else if (nodes[path[i - 1] + LEFT] == node) {
+					nodes[path[i - 1] + LEFT] = balanced;
+				} else {
+					nodes[path[i - 1] + RIGHT] = balanced;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This updates height of a given node in the BST.
+	 * 
+	 * @param node is the given node
+	 */
+	private void updateNode(int node) {
+		int leftHeight = nodes[nodes[node + LEFT] + HEIGHT];
+		int rightHeight = nodes[nodes[node + RIGHT] + HEIGHT];
+		nodes[node + HEIGHT] = Math.max(leftHeight, rightHeight) + 1;
+	}
+	
+	/**
+	 * This finds out the balance factor of a given node in the BST.
+	 * 
+	 * @param node is the given node
+	 * @return the height of the left subtree minus that of the right one
+	 */
+	private int balanceFactor(int node) {
+		return nodes[nodes[node + LEFT] + HEIGHT] - nodes[nodes[node + RIGHT] + HEIGHT];
+	}
+	
+	/**
+	 * This rotates the tree to the left.
+	 * 
+	 * @param root is the root of the tree
+	 * @return the root of rotated tree
+	 */
+	private int rotateLeft(int root) {
+		int temp = nodes[root + RIGHT];
+		nodes[root + RIGHT] = nodes[temp + LEFT];
+		updateNode(root);
+		nodes[temp + LEFT] = root;
+		updateNode(temp);
+		return temp;
+	}
+	
+	/**
+	 * This rotates the tree to the right.
+	 * 
+	 * @param root is the root of the tree
+	 * @return the root of rotated tree
+	 */
+	private int rotateRight(int root) {
+		int temp = nodes[root + LEFT];
+		nodes[root + LEFT] = nodes[temp + RIGHT];
+		updateNode(root);
+		nodes[temp + RIGHT] = root;
+		updateNode(temp);
+		return temp;
+	}
+	
+	/**
+	 * This rebalances a given BST.
+	 * 
+	 * @param root is the root of the given BST
+	 * @return root of a balanced BST.
+	 */
+	private int rebalance(int root) {
+		int balanceFactor = balanceFactor(root);
+		
+		if (balanceFactor < -1) {
+			if (balanceFactor(nodes[root + RIGHT]) > 0) {
+				nodes[root + RIGHT] = rotateRight(nodes[root + RIGHT]);
+			}
+			
+			root = rotateLeft(root);
+		} else if (balanceFactor > 1) {
+			if (balanceFactor(nodes[root + LEFT]) < 0) {
+				nodes[root + LEFT] = rotateLeft(nodes[root + LEFT]);
+			}
+			
+			root = rotateRight(root);
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * This returns contents in this BST using inorder.
+	 * 
+	 * @return a String containing values in this BST
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		int[] stack = new int[nodes[this.root + HEIGHT] + 1];
+		int depth = 0;
+		int node = this.root;
+		
+		while (node != 0 || depth > 0) {
+			while (node != 0) {
+				stack[depth++] = node;
+				node = nodes[node + LEFT];
+			}
+			
+			node = stack[--depth];
+			result.append(nodes[node + VAL]).append(',');
+			node = nodes[node + RIGHT];
+		}
+		
+		if (result.length() > 1) {
+			result.setCharAt(result.length() - 1, ']');
+		} else {
+			result.append("]");
+		}
+		
+		return result.toString();
+	}
+}
@@ -0,0 +1,499 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This is a B+ tree of int values, an ordered alternative to a binary search
+ * tree for large numbers of values. Each node holds up to 64 sorted keys in
+ * one array, so a descent looks at a few wide nodes instead of one cache line
+ * per level, and the search inside a node is a binary search whose steps
+ * choose with a conditional move instead of a branch. Values live in the
+ * leaves, which are linked in order, so scans walk from leaf to leaf without
+ * going back up.
+ * 
+ * Like MyBinarySearchTree, it can hold a value more than once. A leaf keeps
+ * each distinct value once together with the number of its copies.
+ * 
+ * @author Qing Bai
+ */
+public class MyBPlusTree {
+	
+	/**
+	 * This is the largest number of keys in a node.
+	 */
+	private static final int ORDER = 64;
+	
+	/**
+	 * This is the smallest number of keys in a node other than the root.
+	 */
+	private static final int MIN_KEYS = ORDER / 2;
+	
+	/**
+	 * This is the root of this tree.
+	 */
+	private Node root;
+	
+	/**
+	 * This is the number of levels of this tree.
+	 */
+	private int depth;
+	
+	/**
+	 * This is the number of values in this tree, counting every copy.
+	 */
+	private int size;
+	
+	/**
+	 * This is a stack of the nodes on the path from the root, reused by add
+	 * and remove.
+	 */
+	private Node[] path;
+	
+	/**
+	 * This is a stack of the child positions taken on the path from the root.
+	 */
+	private int[] indexes;
+	
+	/**
+	 * This is a constructor of this tree.
+	 */
+	public MyBPlusTree() {
+		this.root = new Node(true);
+		this.depth = 1;
+		this.size = 0;
+		this.path = new Node[8];
+		this.indexes = new int[8];
+	}
+	
+	/**
+	 * This adds one given value into this tree.
+	 * 
+	 * @param val is the given value
+	 */
+	public void add(int val) {
+		Node leaf = descend(val);
+		int pos = upperBound(leaf.keys, leaf.size, val);
+		this.size++;
+		
+		if (pos > 0 && leaf.keys[pos - 1] == val) {
+			leaf.counts[pos - 1]++;
+			return;
+		}
+		
+		System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, leaf.size - pos);
+		System.arraycopy(leaf.counts, pos, leaf.counts, pos + 1, leaf.size - pos);
+		leaf.keys[pos] = val;
+		leaf.counts[pos] = 1;
+		leaf.size++;
+		
+		Node node = leaf;
+		int level = this.depth - 1;
+		
+		while (node.size > ORDER) {
+			Node right = split(node);
+			int separator = node.isLeaf() ? right.keys[0] : node.keys[node.size];
+			
+			if (level == 0) {
+				Node parent = new Node(false);
+				parent.keys[0] = separator;
+				parent.children[0] = node;
+				parent.children[1] = right;
+				parent.size = 1;
+				this.root = parent;
+				this.depth++;
+				return;
+			}
+			
+			Node parent = path[level - 1];
+			int index = indexes[level - 1];
+			System.arraycopy(parent.keys, index, parent.keys, index + 1, parent.size - index);
+			System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.size - index);
+			parent.keys[index] = separator;
+			parent.children[index + 1] = right;
+			parent.size++;
+			node = parent;
+			level--;
+		}
+	}
+	
+	/**
+	 * This removes one copy of a given value in this tree if the value exists.
+	 * 
+	 * @param val is the value
+	 */
+	public void remove(int val) {
+		Node leaf = descend(val);
+		int pos = upperBound(leaf.keys, leaf.size, val) - 1;
+		
+		if (pos < 0 || leaf.keys[pos] != val) {
+			return;
+		}
+		
+		this.size--;
+		
+		if (--leaf.counts[pos] > 0) {
+			return;
+		}
+		
+		System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, leaf.size - pos - 1);
+		System.arraycopy(leaf.counts, pos + 1, leaf.counts, pos, leaf.size - pos - 1);
+		leaf.size--;
+		
+		for (int level = this.depth - 1; level > 0 && path[level].size < MIN_KEYS; level--) {
+			fill(path[level - 1], indexes[level - 1]);
+		}
+		
+		if (!this.root.isLeaf() && this.root.size == 0) {
+			this.root = this.root.children[0];
+			this.depth--;
+		}
+	}
+	
+	/**
+	 * This checks whether or not a given value exists in this tree.
+	 * 
+	 * @param val is the given value
+	 * @return true if the value exists in the tree, otherwise, false
+	 */
+	public boolean contains(int val) {
+		Node node = this.root;
+		
+		while (!node.isLeaf()) {
+			node = node.children[upperBound(node.keys, node.size, val)];
+		}
+		
+		int pos = upperBound(node.keys, node.size, val) - 1;
+		return pos >= 0 && node.keys[pos] == val;
+	}
+	
+	/**
+	 * This finds out the number of values in this tree.
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * This finds the depth of this tree, which is its number of levels, or 0
+	 * if the tree is empty.
+	 * 
+	 * @return an integer for the depth of this tree.
+	 */
+	public int depth() {
+		return this.size == 0 ? 0 : this.depth;
+	}
+	
+	/**
+	 * This passes the values between two given values, both included, to a
+	 * given action in ascending order. It descends once to the lower bound
+	 * and then follows the links between the leaves.
+	 * 
+	 * @param low is the lower bound
+	 * @param high is the upper bound
+	 * @param action is the action taking each value
+	 */
+	public void rangeScan(int low, int high, IntConsumer action) {
+		if (low > high) {
+			return;
+		}
+		
+		Node node = this.root;
+		
+		while (!node.isLeaf()) {
+			node = node.children[upperBound(node.keys, node.size, low)];
+		}
+		
+		int pos = upperBound(node.keys, node.size, low);
+		
+		if (pos > 0 && node.keys[pos - 1] == low) {
+			pos--;
+		}
+		
+		for (; node != null; node = node.next, pos = 0) {
+			for (; pos < node.size; pos++) {
+				if (node.keys[pos] > high) {
+					return;
+				}
+				
+				for (int i = node.counts[pos]; i > 0; i--) {
+					action.accept(node.keys[pos]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This returns contents in this tree in ascending order.
+	 * 
+	 * @return a String containing values in this tree
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		rangeScan(Integer.MIN_VALUE, Integer.MAX_VALUE, val -> result.append(val).append(','));
+		
+		if (result.length() > 1) {
+			result.setCharAt(result.length() - 1, ']');
+		} else {
+			result.append("]");
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * This goes down to the leaf where a given value belongs, keeping the
+	 * nodes passed and the children taken in the path stacks.
+	 * 
+	 * @param val is the given value
+	 * @return the leaf
+	 */
+	private Node descend(int val) {
+		if (path.length < this.depth) {
+			path = new Node[this.depth * 2];
+			indexes = new int[this.depth * 2];
+		}
+		
+		Node node = this.root;
+		
+		for (int level = 0; !node.isLeaf(); level++) {
+			int index = upperBound(node.keys, node.size, val);
+			path[level] = node;
+			indexes[level] = index;
+			node = node.children[index];
+		}
+		
+		path[this.depth - 1] = node;
+		return node;
+	}
+	
+	/**
+	 * This finds out the number of keys not greater than a given value in a
+	 * sorted array. Each step halves the range by picking one of two bases
+	 * with a conditional move, so the number of steps is fixed by the number
+	 * of keys and no branch depends on the data.
+	 * 
+	 * @param keys are the sorted keys
+	 * @param size is the number of keys
+	 * @param val is the given value
+	 * @return the number of keys not greater than the value
+	 */
+	private static int upperBound(int[] keys, int size, int val) {
+		if (size == 0) {
+			return 0;
+		}
+		
+		int base = 0;
+		int n = size;
+		
+		while (n > 1) {
+			int half = n >>> 1;
+			base = keys[base + half] <= val ? base + half : base;
+			n -= half;
+		}
+		
+		return base + (keys[base] <= val ? 1 : 0);
+	}
+	
+	/**
+	 * This moves the upper half of a full node into a new node. For an inner
+	 * node, the middle key is left just past the end of the node, to be moved
+	 * up into the parent.
+	 * 
+	 * @param node is the full node
+	 * @return the new node
+	 */
+	private Node split(Node node) {
+		Node right = new Node(node.isLeaf());
+		
+		if (node.isLeaf()) {
+			int half = node.size / 2;
+			right.size = node.size - half;
+			System.arraycopy(node.keys, half, right.keys, 0, right.size);
+			System.arraycopy(node.counts, half, right.counts, 0, right.size);
+			node.size = half;
+			right.next = node.next;
+			node.next = right;
+		} else {
+			int half = node.size / 2;
+			right.size = node.size - half - 1;
+			System.arraycopy(node.keys, half + 1, right.keys, 0, right.size);
+			System.arraycopy(node.children, half + 1, right.children, 0, right.size + 1);
+			Arrays.fill(node.children, half + 1, node.size + 1, null);
+			node.size = half;
+		}
+		
+		return right;
+	}
+	
+	/**
+	 * This fills a child with too few keys, by borrowing one key from a
+	 * sibling that can spare it, or else by merging with a sibling.
+	 * 
+	 * @param parent is the parent of the child
+	 * @param index is the position of the child in the parent
+	 */
+	private void fill(Node parent, int index) {
+		if (index < parent.size) {
+			Node right = parent.children[index + 1];
+			
+			if (right.size > MIN_KEYS) {
+				borrowRight(parent, index);
+			} else {
+				merge(parent, index);
+			}
+		} else {
+			Node left = parent.children[index - 1];
+			
+			if (left.size > MIN_KEYS) {
+				borrowLeft(parent, index);
+			} else {
+				merge(parent, index - 1);
+			}
+		}
+	}
+	
+	/**
+	 * This moves the first key of the right sibling of a child to the end of
+	 * the child.
+	 * 
+	 * @param parent is the parent of the child
+	 * @param index is the position of the child in the parent
+	 */
+	private void borrowRight(Node parent, int index) {
+		Node node = parent.children[index];
+		Node right = parent.children[index + 1];
+		
+		if (node.isLeaf()) {
+			node.keys[node.size] = right.keys[0];
+			node.counts[node.size] = right.counts[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+			System.arraycopy(right.counts, 1, right.counts, 0, right.size - 1);
+			parent.keys[index] = right.keys[0];
+		} else {
+			node.keys[node.size] = parent.keys[index];
+			node.children[node.size + 1] = right.children[0];
+			parent.keys[index] = right.keys[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+			System.arraycopy(right.children, 1, right.children, 0, right.size);
+			right.children[right.size] = null;
+		}
+		
+		node.size++;
+		right.size--;
+	}
+	
+	/**
+	 * This moves the last key of the left sibling of a child to the front of
+	 * the child.
+	 * 
+	 * @param parent is the parent of the child
+	 * @param index is the position of the child in the parent
+	 */
+	private void borrowLeft(Node parent, int index) {
+		Node node = parent.children[index];
+		Node left = parent.children[index - 1];
+		
+		if (node.isLeaf()) {
+			System.arraycopy(node.keys, 0, node.keys, 1, node.size);
+			System.arraycopy(node.counts, 0, node.counts, 1, node.size);
+			node.keys[0] = left.keys[left.size - 1];
+			node.counts[0] = left.counts[left.size - 1];
+			parent.keys[index - 1] = node.keys[0];
+		} else {
+			System.arraycopy(node.keys, 0, node.keys, 1, node.size);
+			System.arraycopy(node.children, 0, node.children, 1, node.size + 1);
+			node.keys[0] = parent.keys[index - 1];
+			node.children[0] = left.children[left.size];
+			parent.keys[index - 1] = left.keys[left.size - 1];
+			left.children[left.size] = null;
+		}
+		
+		node.size++;
+		left.size--;
+	}
+	
+	/**
+	 * This merges a child with its right sibling, which is then removed from
+	 * the parent.
+	 * 
+	 * @param parent is the parent of the child
+	 * @param index is the position of the child in the parent
+	 */
+	private void merge(Node parent, int index) {
+		Node node = parent.children[index];
+		Node right = parent.children[index + 1];
+		
+		if (node.isLeaf()) {
+			System.arraycopy(right.keys, 0, node.keys, node.size, right.size);
+			System.arraycopy(right.counts, 0, node.counts, node.size, right.size);
+			node.size += right.size;
+			node.next = right.next;
+		} else {
+			node.keys[node.size] = parent.keys[index];
+			System.arraycopy(right.keys, 0, node.keys, node.size + 1, right.size);
+			System.arraycopy(right.children, 0, node.children, node.size + 1, right.size + 1);
+			node.size += right.size + 1;
+		}
+		
+		System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.size - index - 1);
+		System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.size - index - 1);
+		parent.children[parent.size] = null;
+		parent.size--;
+	}
+	
+	/**
+	 * This is a private class used for creating nodes of this tree. A leaf
+	 * has counts and a link to the next leaf, and an inner node has children,
+	 * where child i holds the values from key i - 1 up to but not including
+	 * key i. Each array has room for one extra key before a split.
+	 */
+	private static class Node {
+		
+		/**
+		 * These are the sorted keys of this node.
+		 */
+		private final int[] keys;
+		
+		/**
+		 * These are the numbers of copies of the keys, or null for an inner
+		 * node.
+		 */
+		private final int[] counts;
+		
+		/**
+		 * These are the children of this node, or null for a leaf.
+		 */
+		private final Node[] children;
+		
+		/**
+		 * This is the next leaf, or null for the last leaf or an inner node.
+		 */
+		private Node next;
+		
+		/**
+		 * This is the number of keys in this node.
+		 */
+		private int size;
+		
+		/**
+		 * This is a constructor of this node.
+		 * 
+		 * @param leaf is true to create a leaf, and false for an inner node
+		 */
+		private Node(boolean leaf) {
+			keys = new int[ORDER + 1];
+			counts = leaf ? new int[ORDER + 1] : null;
+			children = leaf ? null : new Node[ORDER + 2];
+		}
+		
+		/**
+		 * This checks whether or not this node is a leaf.
+		 * 
+		 * @return true if this node is a leaf, otherwise, false
+		 */
+		private boolean isLeaf() {
+			return children == null;
+		}
+	}
+}
@@ -1,3 +1,13 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  * This is a self-balancing binary search tree
  * 
@@ -10,234 +20,829 @@ public class MyBinarySearchTree {
 	 */
 	private Node root;
 	
+	/**
+	 * This is a stack of the nodes on the path from the root, reused by add
+	 * and remove.
+	 */
+	private Node[] path;
+	
+	/**
+	 * This records the rotations made by rebalancing.
+	 */
+	private final AvlNode.Rotations rotations = new AvlNode.Rotations();
+	
+	/**
+	 * This records number of adds.
+	 */
+	private long addNum;
+	
+	/**
+	 * This records sum of path lengthes of all adds.
+	 */
+	private long addPathSum;
+	
+	/**
+	 * This records the longest path of one add.
+	 */
+	private int addPathMax;
+	
+	/**
+	 * This records number of removes.
+	 */
+	private long removeNum;
+	
+	/**
+	 * This records sum of path lengthes of all removes.
+	 */
+	private long removePathSum;
+	
+	/**
+	 * This records the longest path of one remove.
+	 */
+	private int removePathMax;
+	
 	/**
 	 * This is a constructor of this BST.
 	 */
 	public MyBinarySearchTree() {
 		this.root = null;	
+		this.path = new Node[8];
 	}
 	
 	/**
-	 * This adds one given value into this BST.
+	 * This is a constructor building this BST from given values at once. The
+	 * values are sorted, and then every subtree takes the middle one as its
+	 * root, so the BST is perfectly balanced and built in O(n).
 	 * 
-	 * @param val is the given value
+	 * @param values are the given values, which are left unchanged
 	 */
-	public void add(int val) {
-		this.root = add(val, this.root);
+	public MyBinarySearchTree(int[] values) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		this.root = build(sorted, 0, sorted.length);
+		this.path = new Node[8];
+	}
+	
+	/**
+	 * This is a helper method of the bulk constructor.
+	 * 
+	 * @param values are the sorted values
+	 * @param from is the index of the first value of the subtree
+	 * @param to is the index after the last value of the subtree
+	 * @return the root of the subtree
+	 */
+	private Node build(int[] values, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		
+		int mid = (from + to) >>> 1;
+		Node node = new Node(values[mid], build(values, from, mid), build(values, mid + 1, to));
+		AvlNode.updateNode(node);
+		return node;
 	}
 	
 	/**
-	 * This is the helper method of add().
+	 * This adds one given value into this BST. The nodes passed on the way
+	 * down are kept in a stack, so the way back up to rebalance them needs no
+	 * recursion.
 	 * 
-	 * @param val is a given value added into this BST.
-	 * @param root is root of the tree.
-	 * @return root of the tree with newly added node
+	 * @param val is the given value
 	 */
-	private Node add(int val, Node root) {
-		if (root == null) {
-			root = new Node(val);
-		} else if (root.val > val) {
-			root.leftChild = add(val, root.leftChild);
-			updateNode(root);
-			root = rebalance(root);
+	public void add(int val) {
+		Node node = this.root;
+		int size = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null) {
+			path[size++] = node;
+			node = node.val > val ? node.leftChild : node.rightChild;
+		}
+		
+		node = new Node(val);
+		
+		if (size == 0) {
+			this.root = node;
+		} else if (path[size - 1].val > val) {
+			path[size - 1].leftChild = node;
 		} else {
-			root.rightChild = add(val, root.rightChild);
-			updateNode(root);
-			root = rebalance(root);
+			path[size - 1].rightChild = node;
 		}
 		
-		return root;
+		this.addNum++;
+		this.addPathSum += size;
+		this.addPathMax = Math.max(this.addPathMax, size);
+		this.root = AvlNode.rebalancePath(path, size, this.root, this.rotations);
 	}
 	
 	/**
-	 * This removes a given value in this BST if the value exists.
+	 * This removes a given value in this BST if the value exists. A node with
+	 * two children takes the maximum value of its left subtree, and the node
+	 * that held that value is removed instead.
 	 * 
 	 * @param val is the value
 	 */
 	public void remove(int val) {
-		root = remove(val, this.root);
+		Node node = this.root;
+		int size = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null && node.val != val) {
+			path[size++] = node;
+			node = node.val > val ? node.leftChild : node.rightChild;
+		}
+		
+		if (node == null) {
+			recordRemove(size);
+			return;
+		}
+		
+		if (node.leftChild != null && node.rightChild != null) {
+			Node target = node;
+			path[size++] = target;
+			node = target.leftChild;
+			
+			while (node.rightChild != null) {
+				path[size++] = node;
+				node = node.rightChild;
+			}
+			
+			target.val = node.val;
+		}
+		
+		Node child = node.leftChild != null ? node.leftChild : node.rightChild;
+		
+		if (size == 0) {
+			this.root = child;
+		} else if (path[size - 1].leftChild == node) {
+			path[size - 1].leftChild = child;
+		} else {
+			path[size - 1].rightChild = child;
+		}
+		
+		recordRemove(size);
+		this.root = AvlNode.rebalancePath(path, size, this.root, this.rotations);
 	}
 	
 	/**
-	 * This is a helper method of remove().
+	 * This records the path length of one remove.
 	 * 
-	 * @param val is the target value
-	 * @param root is the root of the BST
-	 * @return root of a BST where the value has been removed
+	 * @param size is the number of nodes passed
 	 */
-	private Node remove(int val, Node root) {
-		if (root == null) {
-			return null;
+	private void recordRemove(int size) {
+		this.removeNum++;
+		this.removePathSum += size;
+		this.removePathMax = Math.max(this.removePathMax, size);
+	}
+	
+	/**
+	 * This checks whether or not a given value exists in the BST. The search
+	 * follows the order of the values down a single path.
+	 * 
+	 * @param val is the given value
+	 * @return true if the value exists in the tree, otherwise, false
+	 */
+	public boolean contains(int val) {
+		Node node = this.root;
+		
+		while (node != null) {
+			if (node.val == val) {
+				return true;
+			}
+			
+			node = node.val > val ? node.leftChild : node.rightChild;
 		}
 		
-		if (root.val == val) {
-			if (root.leftChild == null && root.rightChild == null) {
-				return null;
-			} else if (root.leftChild == null) {
-				return root.rightChild;
-			} else if (root.rightChild == null) {
-				return root.leftChild;
+		return false;
+	}
+	
+	/**
+	 * This finds out the number of values in this BST.
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return size(this.root);
+	}
+	
+	/**
+	 * This finds out the number of values smaller than a given value, which
+	 * is the position the value has or would have in sorted order.
+	 * 
+	 * @param val is the given value
+	 * @return the number of smaller values
+	 */
+	public int rank(int val) {
+		return countBelow(val, false);
+	}
+	
+	/**
+	 * This finds the k-th smallest value, counting from 0.
+	 * 
+	 * @param k is the position of the value in sorted order
+	 * @return the value at that position
+	 */
+	public int select(int k) {
+		if (k < 0 || k >= size()) {
+			throw new IllegalArgumentException();
+		}
+		
+		Node node = this.root;
+		int leftSize = size(node.leftChild);
+		
+		while (k != leftSize) {
+			if (k < leftSize) {
+				node = node.leftChild;
 			} else {
-				root.val = findMax(root.leftChild);
-				root.leftChild = removeMax(root.leftChild);
+				k -= leftSize + 1;
+				node = node.rightChild;
 			}
-		} else if (root.val < val) {
-			root.rightChild = remove(val, root.rightChild);
-			updateNode(root);
-			root = rebalance(root);
-		} else {
-			root.leftChild = remove(val, root.leftChild);
-			updateNode(root);
-			root = rebalance(root);
+			
+			leftSize = size(node.leftChild);
 		}
 		
-		return root;
+		return node.val;
 	}
 	
 	/**
-	 * This finds out the maximum value in the BST.
+	 * This counts the values between two given values, both included.
 	 * 
-	 * @param root is the root of the BST
-	 * @return maximum value found in the tree
+	 * @param low is the lower bound
+	 * @param high is the upper bound
+	 * @return the number of values in the range
 	 */
-	private int findMax(Node root) {
-		if (root.rightChild == null) {
-			return root.val;
-		} else {
-			return findMax(root.rightChild);
+	public int countInRange(int low, int high) {
+		if (low > high) {
+			return 0;
 		}
+		
+		return countBelow(high, true) - countBelow(low, false);
 	}
 	
 	/**
-	 * This removes the maximum value from the BST.
+	 * This is a helper method of rank() and countInRange(). Whole left
+	 * subtrees are counted from their sizes, so only one path is walked.
 	 * 
-	 * @param root is the root of the BST
-	 * @return root of the BST with one node removed
+	 * @param val is the given value
+	 * @param inclusive is true to count values equal to the given value too
+	 * @return the number of values below the given value
 	 */
-	private Node removeMax(Node root) {
-		if (root.rightChild == null) {
-			return root.leftChild;
-		} else {
-			root.rightChild = removeMax(root.rightChild);
-			updateNode(root);
-			return rebalance(root);
+	private int countBelow(int val, boolean inclusive) {
+		Node node = this.root;
+		int count = 0;
+		
+		while (node != null) {
+			if (node.val < val || (inclusive && node.val == val)) {
+				count += size(node.leftChild) + 1;
+				node = node.rightChild;
+			} else {
+				node = node.leftChild;
+			}
 		}
+		
+		return count;
 	}
 	
 	/**
-	 * This checks whether or not a given value exists in the BST.
+	 * This finds the largest value not greater than a given value.
 	 * 
 	 * @param val is the given value
-	 * @return true if the value exists in the tree, otherwise, false
+	 * @return the largest value not greater than the given value
+	 * @throws NoSuchElementException if every value is greater
 	 */
-	public boolean contains(int val) {
-		return contains(val, this.root);
+	public int floor(int val) {
+		Node node = this.root;
+		Node result = null;
+		
+		while (node != null) {
+			if (node.val <= val) {
+				result = node;
+				node = node.rightChild;
+			} else {
+				node = node.leftChild;
+			}
+		}
+		
+		if (result == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return result.val;
 	}
 	
 	/**
-	 * This is a helper method of contains().
+	 * This finds the smallest value not less than a given value.
 	 * 
-	 * @param val is the target value
-	 * @param root is the root of the BST
-	 * @return true if the value is found in the tree, otherwise, false
+	 * @param val is the given value
+	 * @return the smallest value not less than the given value
+	 * @throws NoSuchElementException if every value is less
 	 */
-	private boolean contains(int val, Node root) {
-		if (root == null) {
-			return false;
-		} else if (root.val == val) {
-			return true;
+	public int ceiling(int val) {
+		Node node = this.root;
+		Node result = null;
+		
+		while (node != null) {
+			if (node.val >= val) {
+				result = node;
+				node = node.leftChild;
+			} else {
+				node = node.rightChild;
+			}
+		}
+		
+		if (result == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return result.val;
+	}
+	
+	/**
+	 * This finds the smallest value in this BST.
+	 * 
+	 * @return the smallest value
+	 * @throws NoSuchElementException if this BST is empty
+	 */
+	public int min() {
+		if (this.root == null) {
+			throw new NoSuchElementException();
+		}
+		
+		Node node = this.root;
+		
+		while (node.leftChild != null) {
+			node = node.leftChild;
+		}
+		
+		return node.val;
+	}
+	
+	/**
+	 * This finds the largest value in this BST.
+	 * 
+	 * @return the largest value
+	 * @throws NoSuchElementException if this BST is empty
+	 */
+	public int max() {
+		if (this.root == null) {
+			throw new NoSuchElementException();
+		}
+		
+		Node node = this.root;
+		
+		while (node.rightChild != null) {
+			node = node.rightChild;
+		}
+		
+		return node.val;
+	}
+	
+	/**
+	 * This moves the values not less than a given value out of this BST into
+	 * a new one. It takes O(log n).
+	 * 
+	 * @param val is the given value
+	 * @return a BST with the values not less than the given value
+	 */
+	public MyBinarySearchTree split(int val) {
+		Split result = new Split();
+		split(this.root, val, false, result);
+		MyBinarySearchTree other = new MyBinarySearchTree();
+		this.root = result.left;
+		other.root = result.right;
+		return other;
+	}
+	
+	/**
+	 * This moves all values of another BST into this one, where none of them
+	 * may be less than the largest value of this BST. The other BST is left
+	 * empty. It takes O(log n).
+	 * 
+	 * @param other is the other BST
+	 */
+	public void join(MyBinarySearchTree other) {
+		if (other == this || (this.root != null && other.root != null && max() > other.min())) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.root = join(this.root, other.root, new Split());
+		other.root = null;
+	}
+	
+	/**
+	 * This moves all values of another BST into this one, keeping duplicates
+	 * as add() does. The other BST is left empty. Instead of adding values one
+	 * by one, it splits the other BST at the root of this one and works on the
+	 * two halves, so it takes O(m log(n / m + 1)) for BSTs of m and n values
+	 * where m <= n.
+	 * 
+	 * @param other is the other BST
+	 */
+	public void union(MyBinarySearchTree other) {
+		if (other == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.root = union(this.root, other.root, new Split());
+		other.root = null;
+	}
+	
+	/**
+	 * This keeps only the values of this BST that exist in another BST. The
+	 * other BST is left empty. It takes O(m log(n / m + 1)) as union() does.
+	 * 
+	 * @param other is the other BST
+	 */
+	public void intersection(MyBinarySearchTree other) {
+		if (other == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.root = filter(this.root, other.root, 0, false, 0, false, true, new Split());
+		other.root = null;
+	}
+	
+	/**
+	 * This removes the values of this BST that exist in another BST. The
+	 * other BST is left empty. It takes O(m log(n / m + 1)) as union() does.
+	 * 
+	 * @param other is the other BST
+	 */
+	public void difference(MyBinarySearchTree other) {
+		if (other == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.root = filter(this.root, other.root, 0, false, 0, false, false, new Split());
+		other.root = null;
+	}
+	
+	/**
+	 * This splits a given subtree at a given value. The values less than it
+	 * go to the left result, and the others go to the right one, unless
+	 * values equal to it are dropped.
+	 * 
+	 * @param node is the root of the subtree
+	 * @param val is the given value
+	 * @param dropEqual is true to drop the values equal to the given value
+	 * @param result is where the two subtrees are put, whose found flag is
+	 * set when a value is dropped
+	 */
+	private void split(Node node, int val, boolean dropEqual, Split result) {
+		if (node == null) {
+			result.left = null;
+			result.right = null;
+			return;
+		}
+		
+		Node left = node.leftChild;
+		Node right = node.rightChild;
+		
+		if (node.val < val) {
+			split(right, val, dropEqual, result);
+			result.left = join(left, node, result.left);
+		} else if (node.val > val || !dropEqual) {
+			split(left, val, dropEqual, result);
+			result.right = join(result.right, node, right);
 		} else {
-			return contains(val, root.leftChild) || contains(val, root.rightChild);
+			result.found = true;
+			split(left, val, true, result);
+			Node low = result.left;
+			split(right, val, true, result);
+			result.left = low;
 		}
 	}
 	
 	/**
-	 * This updates balance factor and height of a given node in the BST.
+	 * This joins two subtrees and a node, where no value of the left subtree
+	 * is greater than the node and no value of the right one is less. The
+	 * node goes down the side of the taller subtree until the heights match,
+	 * so it takes O(difference of heights).
 	 * 
-	 * @param node is the given node
+	 * @param left is the root of the left subtree
+	 * @param mid is the node between them
+	 * @param right is the root of the right subtree
+	 * @return the root of the joined subtree
 	 */
-	private void updateNode(Node node) {
-		int leftHeight = node.leftChild == null ? -1 : node.leftChild.height;
-		int rightHeight = node.rightChild == null ? -1 : node.rightChild.height;
-		node.height = Math.max(leftHeight, rightHeight) + 1;
-		node.balanceFactor = leftHeight - rightHeight;
+	private Node join(Node left, Node mid, Node right) {
+		int leftHeight = left == null ? -1 : left.height;
+		int rightHeight = right == null ? -1 : right.height;
+		
+		if (leftHeight > rightHeight + 1) {
+			left.rightChild = join(left.rightChild, mid, right);
+			AvlNode.updateNode(left);
+			return AvlNode.rebalance(left, this.rotations);
+		} else if (rightHeight > leftHeight + 1) {
+			right.leftChild = join(left, mid, right.leftChild);
+			AvlNode.updateNode(right);
+			return AvlNode.rebalance(right, this.rotations);
+		}
+		
+		mid.leftChild = left;
+		mid.rightChild = right;
+		AvlNode.updateNode(mid);
+		return mid;
 	}
 	
 	/**
-	 * This rotates the tree to the left.
-	 * 	
-	 * @param root is the root of the tree
-	 * @return the root of rotated tree
+	 * This joins two subtrees, using the smallest node of the right one to
+	 * join them.
+	 * 
+	 * @param left is the root of the left subtree
+	 * @param right is the root of the right subtree
+	 * @param result is where the smallest node is put
+	 * @return the root of the joined subtree
 	 */
-	private Node rotateLeft(Node root) {
-		Node temp = root.rightChild;
-		root.rightChild = temp.leftChild;
-		updateNode(root);
-		temp.leftChild = root;
-		updateNode(temp);
-		return temp;
+	private Node join(Node left, Node right, Split result) {
+		if (left == null) {
+			return right;
+		} else if (right == null) {
+			return left;
+		}
+		
+		right = removeMin(right, result);
+		return join(left, result.left, right);
 	}
 	
 	/**
-	 * This rotates the tree to the right.
+	 * This takes the smallest node out of a given subtree.
 	 * 
-	 * @param root is the root of the tree
-	 * @return the root of rotated tree
+	 * @param node is the root of the subtree
+	 * @param result is where the smallest node is put
+	 * @return the root of the rest of the subtree
 	 */
-	private Node rotateRight(Node root) {
-		Node temp = root.leftChild;
-		root.leftChild = temp.rightChild;
-		updateNode(root);
-		temp.rightChild = root;
-		updateNode(temp);
-		return temp;
+	private Node removeMin(Node node, Split result) {
+		if (node.leftChild == null) {
+			result.left = node;
+			return node.rightChild;
+		}
+		
+		node.leftChild = removeMin(node.leftChild, result);
+		AvlNode.updateNode(node);
+		return AvlNode.rebalance(node, this.rotations);
 	}
 	
 	/**
-	 * This rebalances a given BST.
+	 * This is a helper method of union().
 	 * 
-	 * @param root is the root of the given BST
-	 * @return root of a balanced BST.
+	 * @param node is the root of a subtree of this BST
+	 * @param other is the root of a subtree of the other BST
+	 * @param result is used for splitting
+	 * @return the root of the union
 	 */
-	private Node rebalance(Node root) {
-		if (root.balanceFactor < -1) {
-			if (root.rightChild.balanceFactor > 0) {
-				root.rightChild = rotateRight(root.rightChild);
+	private Node union(Node node, Node other, Split result) {
+		if (node == null) {
+			return other;
+		} else if (other == null) {
+			return node;
+		}
+		
+		Node left = node.leftChild;
+		Node right = node.rightChild;
+		split(other, node.val, false, result);
+		Node otherRight = result.right;
+		left = union(left, result.left, result);
+		right = union(right, otherRight, result);
+		return join(left, node, right);
+	}
+	
+	/**
+	 * This is a helper method of intersection() and difference(). Splitting
+	 * drops the values of the other subtree equal to the value of the node,
+	 * while the subtrees of this one may still hold copies of it at their
+	 * edges, so whether the bounds of a subtree exist in the other BST is
+	 * passed down with them.
+	 * 
+	 * @param node is the root of a subtree of this BST
+	 * @param other is the root of a subtree of the other BST
+	 * @param low is the lower bound of the subtree
+	 * @param lowFound is true if the lower bound exists in the other BST
+	 * @param high is the upper bound of the subtree
+	 * @param highFound is true if the upper bound exists in the other BST
+	 * @param common is true to keep the values existing in the other BST, and
+	 * false to keep the others
+	 * @param result is used for splitting
+	 * @return the root of the values kept
+	 */
+	private Node filter(Node node, Node other, int low, boolean lowFound, int high,
+			boolean highFound, boolean common, Split result) {
+		if (node == null) {
+			return null;
+		} else if (other == null && !lowFound && !highFound) {
+			return common ? null : node;
+		}
+		
+		Node left = node.leftChild;
+		Node right = node.rightChild;
+		result.found = false;
+		split(other, node.val, true, result);
+		boolean found = result.found || (lowFound && low == node.val)
+				|| (highFound && high == node.val);
+		Node otherRight = result.right;
+		left = filter(left, result.left, low, lowFound, node.val, found, common, result);
+		right = filter(right, otherRight, node.val, found, high, highFound, common, result);
+		return found == common ? join(left, node, right) : join(left, right, result);
+	}
+	
+	/**
+	 * This gives the values in this BST in ascending order. Nodes are visited
+	 * lazily with a stack no deeper than the tree, so no values are copied.
+	 * The BST must not be changed while the iterator is in use.
+	 * 
+	 * @return an iterator over the values
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+	
+	/**
+	 * This gives a spliterator over the values in this BST in ascending
+	 * order. It knows its exact size and splits by position, so a parallel
+	 * stream gets balanced halves. The BST must not be changed while the
+	 * spliterator is in use.
+	 * 
+	 * @return a spliterator over the values
+	 */
+	public Spliterator.OfInt spliterator() {
+		return new InOrderSpliterator(0, size());
+	}
+	
+	/**
+	 * This gives a stream of the values in this BST in ascending order.
+	 * 
+	 * @return a stream of the values
+	 */
+	public IntStream stream() {
+		return StreamSupport.intStream(spliterator(), false);
+	}
+	
+	/**
+	 * This passes the values between two given values, both included, to a
+	 * given action in ascending order. Subtrees outside the bounds are never
+	 * entered, so it takes O(log n) plus the number of values passed.
+	 * 
+	 * @param low is the lower bound
+	 * @param high is the upper bound
+	 * @param action is the action taking each value
+	 */
+	public void rangeScan(int low, int high, IntConsumer action) {
+		if (this.root == null || low > high) {
+			return;
+		}
+		
+		Node[] stack = new Node[this.root.height + 1];
+		Node node = this.root;
+		int size = 0;
+		
+		while (node != null) {
+			if (node.val >= low) {
+				stack[size++] = node;
+				node = node.leftChild;
+			} else {
+				node = node.rightChild;
 			}
+		}
+		
+		while (size > 0) {
+			node = stack[--size];
 			
-			root = rotateLeft(root);
-		} else if (root.balanceFactor > 1) {
-			if (root.leftChild.balanceFactor < 0) {
-				root.leftChild = rotateLeft(root.leftChild);
+			if (node.val > high) {
+				return;
 			}
 			
-			root = rotateRight(root);
+			action.accept(node.val);
+			node = node.rightChild;
+			
+			while (node != null) {
+				stack[size++] = node;
+				node = node.leftChild;
+			}
 		}
-		
-		return root;
 	}
 	
 	/**
-	 * This finds the depth of this BST.
+	 * This finds out the number of nodes in a given subtree.
+	 * 
+	 * @param node is the root of the subtree
+	 * @return the number of nodes
+	 */
+	private int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+	
+	/**
+	 * This finds the depth of this BST. Every node keeps its height, so this
+	 * reads it from the root.
 	 * 
 	 * @return an integer for the depth of this BST.
 	 */
 	public int depth() {
-		return depth(this.root);
+		return this.root == null ? 0 : this.root.height + 1;
 	}
 	
 	/**
-	 * This is a helper method of depth().
+	 * This finds out the number of single rotations made by rebalancing.
 	 * 
-	 * @param root is the root of a BST
-	 * @return depth of the BST
+	 * @return the number of single rotations
 	 */
-	private int depth(Node root) {
-		if (root == null) {
-			return 0;
-		} else {
-			return Math.max(depth(root.leftChild), depth(root.rightChild)) + 1;
-		}
+	public long singleRotations() {
+		return this.rotations.singleRotations;
+	}
+	
+	/**
+	 * This finds out the number of double rotations made by rebalancing.
+	 * 
+	 * @return the number of double rotations
+	 */
+	public long doubleRotations() {
+		return this.rotations.doubleRotations;
+	}
+	
+	/**
+	 * This finds out the number of times a node was checked for rebalancing.
+	 * 
+	 * @return the number of rebalance calls
+	 */
+	public long rebalances() {
+		return this.rotations.rebalances;
+	}
+	
+	/**
+	 * This finds out the number of adds.
+	 * 
+	 * @return the number of adds
+	 */
+	public long adds() {
+		return this.addNum;
+	}
+	
+	/**
+	 * This finds out the average number of nodes an add passed on its way
+	 * down.
+	 * 
+	 * @return the average path length of the adds
+	 */
+	public double averageAddPath() {
+		return this.addPathSum * 1.0 / this.addNum;
+	}
+	
+	/**
+	 * This finds out the largest number of nodes one add passed.
+	 * 
+	 * @return the longest path of an add
+	 */
+	public int maxAddPath() {
+		return this.addPathMax;
+	}
+	
+	/**
+	 * This finds out the number of removes, including those of missing
+	 * values.
+	 * 
+	 * @return the number of removes
+	 */
+	public long removes() {
+		return this.removeNum;
+	}
+	
+	/**
+	 * This finds out the average number of nodes a remove passed on its way
+	 * down, including the way to the node taking the place of a removed one.
+	 * 
+	 * @return the average path length of the removes
+	 */
+	public double averageRemovePath() {
+		return this.removePathSum * 1.0 / this.removeNum;
+	}
+	
+	/**
+	 * This finds out the largest number of nodes one remove passed.
+	 * 
+	 * @return the longest path of a remove
+	 */
+	public int maxRemovePath() {
+		return this.removePathMax;
+	}
+	
+	/**
+	 * This prints out the statistics of this BST.
+	 */
+	public void stats() {
+		StringBuilder result = new StringBuilder();
+		result.append("Binary Search Tree Stats\n");
+		result.append("================================\n");
+		result.append(String.format("Number of Values: %d\n", size()));
+		result.append(String.format("Depth: %d\n", depth()));
+		result.append(String.format("Adds: %d\n", this.addNum));
+		result.append(String.format("Max Add Path: %d\n", this.addPathMax));
+		result.append(String.format("Average Add Path: %.6f\n", averageAddPath()));
+		result.append(String.format("Removes: %d\n", this.removeNum));
+		result.append(String.format("Max Remove Path: %d\n", this.removePathMax));
+		result.append(String.format("Average Remove Path: %.6f\n", averageRemovePath()));
+		result.append(String.format("Rebalances: %d\n", this.rotations.rebalances));
+		result.append(String.format("Single Rotations: %d\n", this.rotations.singleRotations));
+		result.append(String.format("Double Rotations: %d\n", this.rotations.doubleRotations));
+		System.out.print(result);
 	}
 	
 	/**
@@ -247,7 +852,7 @@ public class MyBinarySearchTree {
 	 */
 	public String toString() {
 		StringBuilder result = new StringBuilder("[");
-		toString(this.root, result);
+		rangeScan(Integer.MIN_VALUE, Integer.MAX_VALUE, val -> result.append(val).append(','));
 		
 		if (result.length() > 1) {
 			result.setCharAt(result.length() - 1, ']');
@@ -259,49 +864,190 @@ public class MyBinarySearchTree {
 	}
 	
 	/**
-	 * This is a helper method of toString().
-	 * 
-	 * @param root is the root of a BST
+	 * This is a private class walking a range of positions of this BST in
+	 * order. The stack holds the nodes whose values are still to come, with
+	 * the next one on top; it is filled on the first advance, by descending to
+	 * the first position the same way select() does.
 	 */
-	private void toString(Node root, StringBuilder result) {
-		if (root == null) {
-			result.append("");
-		} else {
-			toString(root.leftChild, result);
-			result.append(root.val + ",");
-			toString(root.rightChild, result);
+	private class InOrderSpliterator implements Spliterator.OfInt {
+		
+		/**
+		 * This is the position of the next value.
+		 */
+		private int from;
+		
+		/**
+		 * This is the position after the last value.
+		 */
+		private final int to;
+		
+		/**
+		 * This is the stack of nodes, or null before the first advance.
+		 */
+		private Node[] stack;
+		
+		/**
+		 * This is the number of nodes in the stack.
+		 */
+		private int size;
+		
+		/**
+		 * This is a constructor of this spliterator.
+		 * 
+		 * @param from is the position of the first value
+		 * @param to is the position after the last value
+		 */
+		private InOrderSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		/**
+		 * This fills the stack with the nodes from the root down to the node at
+		 * the first position.
+		 */
+		private void start() {
+			stack = new Node[root == null ? 0 : root.height + 1];
+			Node node = root;
+			int k = from;
+			
+			while (node != null) {
+				int leftSize = size(node.leftChild);
+				
+				if (k < leftSize) {
+					stack[size++] = node;
+					node = node.leftChild;
+				} else if (k == leftSize) {
+					stack[size++] = node;
+					node = null;
+				} else {
+					k -= leftSize + 1;
+					node = node.rightChild;
+				}
+			}
+		}
+		
+		/**
+		 * This takes the next node off the stack and pushes the nodes leading
+		 * to the one after it.
+		 * 
+		 * @return the value of the next node
+		 */
+		private int advance() {
+			Node node = stack[--size];
+			Node next = node.rightChild;
+			
+			while (next != null) {
+				stack[size++] = next;
+				next = next.leftChild;
+			}
+			
+			from++;
+			return node.val;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean tryAdvance(IntConsumer action) {
+			if (from >= to) {
+				return false;
+			}
+			
+			if (stack == null) {
+				start();
+			}
+			
+			action.accept(advance());
+			return true;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public void forEachRemaining(IntConsumer action) {
+			if (from < to && stack == null) {
+				start();
+			}
+			
+			while (from < to) {
+				action.accept(advance());
+			}
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public Spliterator.OfInt trySplit() {
+			int mid = (from + to) >>> 1;
+			
+			if (stack != null || mid - from < 2) {
+				return null;
+			}
+			
+			Spliterator.OfInt prefix = new InOrderSpliterator(from, mid);
+			from = mid;
+			return prefix;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public long estimateSize() {
+			return to - from;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public int characteristics() {
+			return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public Comparator<? super Integer> getComparator() {
+			return null;
 		}
 	}
 	
 	/**
-	 * This is a private class used for creating nodes of this BST.
+	 * This is a private class holding the results of splitting a subtree.
 	 */
-	private class Node {
+	private class Split {
 		
 		/**
-		 * This is a value saved in this node.
+		 * This is the root of the left subtree.
 		 */
-		private int val;
+		private Node left;
 		
 		/**
-		 * This is the height of this node in the tree.
+		 * This is the root of the right subtree.
 		 */
-		private int height;
+		private Node right;
 		
 		/**
-		 * This is the balance factor of this node.
+		 * This is true if a value equal to the splitting one was dropped.
 		 */
-		private int balanceFactor;
+		private boolean found;
+	}
+	
+	/**
+	 * This is a private class used for creating nodes of this BST. It keeps
+	 * the size of its subtree up to date through the hook of AvlNode.
+	 */
+	private class Node extends AvlNode<Node> {
 		
 		/**
-		 * This is left child of this node.
+		 * This is a value saved in this node.
 		 */
-		private Node leftChild;
+		private int val;
 		
 		/**
-		 * This is right child of this node.
+		 * This is the number of nodes in the subtree rooted at this node.
 		 */
-		private Node rightChild;
+		private int size;
 		
 		/**
 		 * This is a constructor of this node.
@@ -323,8 +1069,15 @@ public class MyBinarySearchTree {
 			this.val = val;
 			this.leftChild = leftChild;
 			this.rightChild = rightChild;
-			balanceFactor = 0;
-			height = 0;
+			size = 1;
 		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		void updated() {
+			size = size(leftChild) + size(rightChild) + 1;
+		}
+	
 	}
 }
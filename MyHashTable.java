@@ -1,9 +1,14 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * This is a hash table.
@@ -14,19 +19,142 @@ import java.util.Set;
 public class MyHashTable<K, V> {
 	
 	/**
-	 * This is an array used to store nodes in this hash table.
+	 * This is the load factor used when the caller doesn't give one.
 	 */
-	private final MyHashTable<K, V>.Node[] myNodes;
+	private static final double DEFAULT_LOAD_FACTOR = 0.75;
+	
+	/**
+	 * This is number of old buckets moved into the new array by each put or get
+	 * while a resize is in progress.
+	 */
+	private static final int MIGRATE_STEP = 4;
+	
+	/**
+	 * This is the number of slots below which forEachParallel stops splitting
+	 * the arrays into smaller tasks.
+	 */
+	private static final int PARALLEL_SLOTS = 1 << 13;
+	
+	/**
+	 * This is the marker left in the old key array for a key that has been
+	 * moved or overwritten, so probe chains in the old array stay intact.
+	 */
+	private static final Object MOVED = new Object();
+	
+	/**
+	 * This is an array used to store keys in this hash table.
+	 */
+	private Object[] myKeys;
+	
+	/**
+	 * This is an array used to store values, at the same index as their keys.
+	 */
+	private Object[] myValues;
+	
+	/**
+	 * This is an array caching hash codes of the keys, at the same index as
+	 * the keys. It is null when hash codes are not cached.
+	 */
+	private int[] myHashes;
 	
 	/**
 	 * This is the size of the arrays.
 	 */
-	private final int myCapacity;
+	private int myCapacity;
+	
+	/**
+	 * This is the key array being drained into myKeys during a resize. It is
+	 * null when no resize is in progress.
+	 */
+	private Object[] myOldKeys;
+	
+	/**
+	 * This is the value array being drained into myValues during a resize.
+	 */
+	private Object[] myOldValues;
+	
+	/**
+	 * This is the hash code array being drained into myHashes during a resize.
+	 */
+	private int[] myOldHashes;
+	
+	/**
+	 * This is the size of the old arrays.
+	 */
+	private int myOldCapacity;
+	
+	/**
+	 * This is the next bucket of the old arrays to be moved.
+	 */
+	private int myMigrateIndex;
+	
+	/**
+	 * This tells whether or not the capacity is a power of two, so indexes
+	 * are found by masking a mixed hash code instead of by a division.
+	 */
+	private final boolean myPowerOfTwo;
+	
+	/**
+	 * This tells whether or not new entries take the slots of entries closer
+	 * to their home slots (Robin Hood probing).
+	 */
+	private final boolean myRobinHood;
+	
+	/**
+	 * This is the maximum fill ratio before the arrays grow.
+	 */
+	private final double myLoadFactor;
+	
+	/**
+	 * This is the maximum number of entries kept before the least recently
+	 * used ones are evicted, or 0 if this hash table is not bounded.
+	 */
+	private final int myMaxEntries;
+	
+	/**
+	 * This is an array of reference bits, at the same index as the keys, set
+	 * when an entry is used and cleared as the clock hand passes it. It is
+	 * null when this hash table is not bounded.
+	 */
+	private boolean[] myReferenced;
+	
+	/**
+	 * This is the slot the clock hand looks at next when an entry has to be
+	 * evicted.
+	 */
+	private int myClockHand;
+	
+	/**
+	 * This records number of gets that found their key.
+	 */
+	private long myHits;
+	
+	/**
+	 * This records number of gets that didn't find their key.
+	 */
+	private long myMisses;
+	
+	/**
+	 * This records number of entries evicted.
+	 */
+	private long myEvictions;
+	
+	/**
+	 * This is the number of entries at which the arrays grow.
+	 */
+	private int myThreshold;
+	
+	/**
+	 * This tells whether or not statistics are kept. When they aren't, none
+	 * of the counters below is touched.
+	 */
+	private final boolean myStats;
 	
 	/**
-	 * This is histogram of probes.
+	 * This is histogram of probes, where element i counts the entries placed
+	 * after i + 1 probes.
 	 */
-	private final Map<Integer, Integer> myHistogram;
+	private int[] myHistogram;
 	
 	/**
 	 * This records number of entries.
@@ -41,30 +169,119 @@ public class MyHashTable<K, V> {
 	/**
 	 * This records sum of probe lengthes of all entries.
 	 */
-	private int myProbSum;
+	private long myProbSum;
+	
+	/**
+	 * This records sum of squared probe lengthes of all entries.
+	 */
+	private long myProbSquareSum;
+	
+	/**
+	 * This records number of puts.
+	 */
+	private long myPutNum;
+	
+	/**
+	 * This records sum of probe lengthes of all puts.
+	 */
+	private long myPutProbSum;
+	
+	/**
+	 * This records the maximum probe length of one put.
+	 */
+	private int myPutProbMax;
+	
+	/**
+	 * This records number of gets.
+	 */
+	private long myGetNum;
+	
+	/**
+	 * This records sum of probe lengthes of all gets.
+	 */
+	private long myGetProbSum;
 	
+	/**
+	 * This records the maximum probe length of one get.
+	 */
+	private int myGetProbMax;
 	
 	/**
-	 * This builds a hash table with a given capacity.
+	 * This builds a hash table with a given initial capacity.
 	 * 
 	 * @param theCapacity is the given capacity
 	 */
-	@SuppressWarnings("unchecked")
 	public MyHashTable(final int theCapacity) {
-		if (theCapacity < 1) {
+		this(theCapacity, new Settings());
+	}
+	
+	/**
+	 * This builds a hash table with a given initial capacity and load factor.
+	 * The table doubles its capacity once the number of entries goes over
+	 * theLoadFactor * capacity.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @param theLoadFactor is the maximum fill ratio, between 0 and 1
+	 */
+	public MyHashTable(final int theCapacity, final double theLoadFactor) {
+		this(theCapacity, new Settings().loadFactor(theLoadFactor));
+	}
+	
+	/**
+	 * This builds a hash table with a given initial capacity and settings.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @param theSettings is the settings of the table
+	 */
+	public MyHashTable(final int theCapacity, final Settings theSettings) {
+		if (theCapacity < 1 || theSettings == null) {
 			throw new IllegalArgumentException();
 		}
 		
-		myCapacity = theCapacity;
-		myNodes = new MyHashTable.Node[myCapacity];
-		myHistogram = new HashMap<Integer, Integer>();
+		myPowerOfTwo = theSettings.myPowerOfTwo;
+		myLoadFactor = theSettings.myLoadFactor;
+		myMaxEntries = theSettings.myMaxEntries;
+		
+		// a bounded table is made large enough to never grow
+		int capacity = theCapacity;
+		
+		while (myMaxEntries > threshold(capacity)) {
+			capacity = Math.max(capacity + 1, (int) Math.ceil(myMaxEntries / myLoadFactor));
+		}
+		
+		myCapacity = myPowerOfTwo ? powerOfTwo(capacity) : capacity;
+		myRobinHood = theSettings.myRobinHood;
+		myKeys = new Object[myCapacity];
+		myValues = new Object[myCapacity];
+		myHashes = theSettings.myCacheHashes ? new int[myCapacity] : null;
+		myReferenced = myMaxEntries > 0 ? new boolean[myCapacity] : null;
+		myClockHand = 0;
+		myHits = 0;
+		myMisses = 0;
+		myEvictions = 0;
+		myThreshold = threshold(myCapacity);
+		myOldKeys = null;
+		myOldValues = null;
+		myOldHashes = null;
+		myOldCapacity = 0;
+		myMigrateIndex = 0;
+		myStats = theSettings.myStats;
+		myHistogram = new int[8];
 		myEntryNum = 0;
 		myProbMax = 0;
 		myProbSum = 0;
+		myProbSquareSum = 0;
+		myPutNum = 0;
+		myPutProbSum = 0;
+		myPutProbMax = 0;
+		myGetNum = 0;
+		myGetProbSum = 0;
+		myGetProbMax = 0;
 	}
 	
 	/**
-	 * This adds or updates a new value for a given key.
+	 * This adds or updates a new value for a given key. Updating an existing
+	 * key writes the value in place without allocating anything.
 	 * 
 	 * @param theKey is the given key
 	 * @param theValue is the value
@@ -74,204 +291,1432 @@ public class MyHashTable<K, V> {
 			throw new IllegalArgumentException();
 		}
 		
-		int i = hash(theKey);
-		int probTimes = 1;
-		Node node = myNodes[i];
-		
-		// This searches an index to place the key and value
-		// also avoids infinite loop when the array is full
-		while (node != null && !node.myKey.equals(theKey) && probTimes <= myCapacity) {
-			i = (i + 1) % myCapacity;
-			node = myNodes[i];
-			probTimes++;
-		}
+		migrate();
+		final int h = theKey.hashCode();
+		final int i = find(h, theKey);
+		recordPut(h, i);
 		
-		if (probTimes <= myCapacity) {		
-			recordStats(node, probTimes);
-			myNodes[i] = new Node(theKey, theValue);
+		if (i >= 0) {
+			myValues[i] = theValue;
+			
+			if (myReferenced != null) {
+				myReferenced[i] = true;
+			}
+		} else {
+			// a key still waiting in the old array is moved over instead of
+			// being counted as a new entry
+			if (myOldKeys != null && removeOld(h, theKey)) {
+				myEntryNum--;
+			}
+			
+			add(-i - 1, h, theKey, theValue);
 		}
 	}
 	
 	/**
-	 * This records and updates number of entries, max probe length, sum of
-	 * probes, and histrogram of probes.
+	 * This adds a value for a given key if the key doesn't exist yet. The
+	 * key is searched once and the slot found is used for the new entry.
 	 * 
-	 * @param theKey is the key
-	 * @param theProbeTimes is number of probes spent on finding a location for
-	 * the key 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 * @return the value already there or null if the key was added
 	 */
-	private void recordStats(final Node theNode, final int theProbeTimes) {
-		//only works when adding a new key to this hash table
-		if (theNode == null) {
-			myEntryNum++;
-			myProbSum += theProbeTimes;
-			
-			if (theProbeTimes > myProbMax) {
-				myProbMax = theProbeTimes;
+	@SuppressWarnings("unchecked")
+	public V putIfAbsent(final K theKey, final V theValue) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		migrate();
+		final int h = theKey.hashCode();
+		int i = find(h, theKey);
+		recordPut(h, i);
+		
+		if (i >= 0) {
+			if (myReferenced != null) {
+				myReferenced[i] = true;
 			}
 			
-			if (myHistogram.containsKey(theProbeTimes)) {
-				myHistogram.put(theProbeTimes, myHistogram.get(theProbeTimes) + 1);
-			} else {
-				myHistogram.put(theProbeTimes, 1);
-			}
+			return (V) myValues[i];
+		}
+		
+		final int slot = -i - 1;
+		
+		if (myOldKeys != null && (i = findOld(h, theKey)) >= 0) {
+			return (V) myOldValues[i];
 		}
+		
+		add(slot, h, theKey, theValue);
+		return null;
 	}
 	
 	/**
-	 * This searches a given key and returns a value for the key. if the key 
-	 * doesn't exist, null is returned.
+	 * This returns the value for a given key, computing and adding it with a
+	 * given function if the key doesn't exist. The key is searched once and
+	 * the slot found is used for the new entry, so the function must not
+	 * change this hash table. If the function returns null, nothing is added.
 	 * 
 	 * @param theKey is the given key
-	 * @return a value for the key or null if the key doesn't exist
+	 * @param theFunction is the function computing a value from the key
+	 * @return the value for the key, or null if the function returned null
 	 */
-	public V get(final K theKey) {
+	@SuppressWarnings("unchecked")
+	public V computeIfAbsent(final K theKey, final Function<? super K, ? extends V> theFunction) {
 		if (theKey == null) {
-			return null;
+			throw new IllegalArgumentException();
+		}
+		
+		migrate();
+		final int h = theKey.hashCode();
+		int i = find(h, theKey);
+		
+		if (i >= 0) {
+			recordGet(h, i, true);
+			
+			if (myReferenced != null) {
+				myReferenced[i] = true;
+			}
+			
+			return (V) myValues[i];
+		}
+		
+		final int slot = -i - 1;
+		
+		if (myOldKeys != null && (i = findOld(h, theKey)) >= 0) {
+			recordGet(h, -slot - 1, true);
+			return (V) myOldValues[i];
 		}
 		
-		int i = hash(theKey);
-		int probTimes = 1;
-		Node node = myNodes[i];
+		recordGet(h, -slot - 1, false);
+		final Object[] keys = myKeys;
+		final int entryNum = myEntryNum;
+		final boolean resizing = myOldKeys != null;
+		final V value = theFunction.apply(theKey);
+		
+		if (keys != myKeys || entryNum != myEntryNum) {
+			throw new ConcurrentModificationException();
+		}
 		
-		// This stops when it finds the key, encounters null or has searched all the keys
-		while (node != null && !node.myKey.equals(theKey) && probTimes <= myCapacity) {
-			i = (i + 1) % myCapacity;
-			node = myNodes[i];
-			probTimes++;
+		if (value != null) {
+			// lookups made by the function may have moved entries of the resize
+			// into the slot found before, so it is searched again
+			add(resizing ? -find(h, theKey) - 1 : slot, h, theKey, value);
 		}
 		
-		return node != null && probTimes <= myCapacity ? node.myValue : null;
+		return value;
 	}
 	
 	/**
-	 * This checks whether or not a given key exists in this hash table.
+	 * This combines a given value with the value of a given key using a given
+	 * function, or adds the given value if the key doesn't exist. The key is
+	 * searched once and the result is written to the slot found, so the
+	 * function must not change this hash table. If the function returns null,
+	 * the key is removed.
 	 * 
 	 * @param theKey is the given key
-	 * @return true if exists. Otherwise, false.
+	 * @param theValue is the value to combine or add
+	 * @param theFunction is the function taking the old value and the given
+	 * value
+	 * @return the new value for the key, or null if the key was removed
 	 */
-	public boolean containsKey(final K theKey) {
-		return get(theKey) != null;
+	public V merge(final K theKey, final V theValue,
+			final BiFunction<? super V, ? super V, ? extends V> theFunction) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		migrate();
+		final int h = theKey.hashCode();
+		int i = find(h, theKey);
+		recordPut(h, i);
+		
+		if (i >= 0) {
+			return merge(myKeys, myValues, i, h, theKey, theValue, theFunction);
+		}
+		
+		final int slot = -i - 1;
+		
+		if (myOldKeys != null && (i = findOld(h, theKey)) >= 0) {
+			return merge(myOldKeys, myOldValues, i, h, theKey, theValue, theFunction);
+		}
+		
+		add(slot, h, theKey, theValue);
+		return theValue;
 	}
 	
 	/**
-	 * This builds a set of keys.
+	 * This combines a given value with the value at a given slot of either the
+	 * new or the old arrays, removing the entry if the function returns null.
+	 * While a resize is in progress, lookups made by the function may move the
+	 * entry, so it is searched again before it is written.
 	 * 
-	 * @return the set of keys
+	 * @param theKeys is the key array holding the entry
+	 * @param theValues is the value array holding the entry
+	 * @param theIndex is the slot of the entry
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the key
+	 * @param theValue is the value to combine
+	 * @param theFunction is the function taking the old value and the given
+	 * value
+	 * @return the new value, or null if the entry was removed
 	 */
-	public Set<K> keySet() {
-		final Set<K> set = new HashSet<K>();
-		Node node;
+	@SuppressWarnings("unchecked")
+	private V merge(final Object[] theKeys, final Object[] theValues, final int theIndex,
+			final int theHash, final K theKey, final V theValue,
+			final BiFunction<? super V, ? super V, ? extends V> theFunction) {
+		final Object[] newKeys = myKeys;
+		final int entryNum = myEntryNum;
+		final boolean resizing = myOldKeys != null;
+		final V value = theFunction.apply((V) theValues[theIndex], theValue);
 		
-		for (int i = 0; i < myCapacity; i++) {
-			node = myNodes[i];
+		if (newKeys != myKeys || entryNum != myEntryNum) {
+			throw new ConcurrentModificationException();
+		}
+		
+		Object[] keys = theKeys;
+		Object[] values = theValues;
+		int i = theIndex;
+		
+		if (resizing) {
+			keys = myKeys;
+			values = myValues;
+			i = find(theHash, theKey);
 			
-			if (node != null) {
-				set.add(node.myKey);
+			if (i < 0) {
+				keys = myOldKeys;
+				values = myOldValues;
+				i = keys == null ? -1 : findOld(theHash, theKey);
+			}
+			
+			if (i < 0) {
+				throw new ConcurrentModificationException();
 			}
 		}
 		
-		return set;
+		if (value != null) {
+			values[i] = value;
+			
+			if (keys == myKeys && myReferenced != null) {
+				myReferenced[i] = true;
+			}
+		} else if (keys == myKeys) {
+			unrecordStats(distance(index(theHash, myCapacity), i) + 1);
+			shiftBack(i);
+			myEntryNum--;
+		} else {
+			keys[i] = MOVED;
+			values[i] = null;
+			myEntryNum--;
+		}
+		
+		return value;
 	}
-
+	
 	/**
-	 * This displays statistics for the data in the hash table.
+	 * This returns the value for a given key, or a given default value if the
+	 * key doesn't exist.
+	 * 
+	 * @param theKey is the given key
+	 * @param theDefault is the default value
+	 * @return the value for the key or the default value
 	 */
-	public void stats() {
-		System.out.println("Hash Table Stats");
-		System.out.println("================================");
-		System.out.printf("Number of Entries: %d\n", myEntryNum);
-		System.out.printf("Number of Buckets: %d\n", myCapacity);
-		System.out.print("Histogram of Probes: ");
-		
-		final int[] histogram = new int[myProbMax];
-		int probeLength;
-		final Iterator<Integer> iterator = myHistogram.keySet().iterator();
+	public V getOrDefault(final K theKey, final V theDefault) {
+		final V value = get(theKey);
+		return value != null ? value : theDefault;
+	}
+	
+	/**
+	 * This adds a new entry at a slot already found for its key, evicting an
+	 * entry first if the table is full and growing the table afterwards if
+	 * needed.
+	 * 
+	 * @param theSlot is the slot found by find for the key
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the key
+	 * @param theValue is the value
+	 */
+	private void add(final int theSlot, final int theHash, final K theKey, final Object theValue) {
+		int slot = theSlot;
 		
-		while (iterator.hasNext()) {
-			probeLength = iterator.next();
-			histogram[probeLength - 1] = myHistogram.get(probeLength);
+		if (myMaxEntries > 0 && myEntryNum == myMaxEntries) {
+			evict();
+			slot = -find(theHash, theKey) - 1;
 		}
 		
-		System.out.println(Arrays.toString(histogram));
-		System.out.printf("Fill Percentage: %.6f%%\n", myEntryNum * 100.0 / myCapacity);
-		System.out.printf("Max Linear Prob: %d\n", myProbMax);
-		System.out.printf("Average Linear Prob: %.6f\n", myProbSum * 1.0 / myEntryNum);
+		myEntryNum++;
+		insert(slot, theHash, theKey, theValue);
+		
+		if (myEntryNum > myThreshold) {
+			resize();
+		}
 	}
-
+	
 	/**
-	 * This determines where the key should be placed in the array.
+	 * This searches a given key in the array. The array is never full because
+	 * it grows before reaching the load factor, so the search always ends.
+	 * With Robin Hood probing it also ends at the first entry that is closer
+	 * to its home slot than the key would be, because the key can't be placed
+	 * after such an entry.
 	 * 
-	 * @param theKey is the key
-	 * @return index of the array in where this key should be placed
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the given key
+	 * @return index of the key, or (-index - 1) where index is the slot the
+	 * key should be inserted at if it doesn't exist
 	 */
-	private int hash(final K theKey) {
-		return Math.abs(theKey.hashCode() % myCapacity);
+	private int find(final int theHash, final K theKey) {
+		int i = index(theHash, myCapacity);
+		int dist = 0;
+		
+		while (myKeys[i] != null) {
+			if (matches(i, theHash, theKey)) {
+				return i;
+			} else if (myRobinHood && distance(index(hashAt(i), myCapacity), i) < dist) {
+				break;
+			}
+			
+			i = next(i, myCapacity);
+			dist++;
+		}
+		
+		return -i - 1;
 	}
 	
 	/**
-	 * {@inheritDoc}
+	 * This inserts a new entry starting from a given slot. The slot is empty
+	 * unless Robin Hood probing is used, in which case an entry closer to its
+	 * home slot than the new one gives its slot away and is carried on to the
+	 * next slots in the same way.
+	 * 
+	 * @param theIndex is the slot where the entry goes
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the key
+	 * @param theValue is the value
 	 */
-	public String toString() {
-		final StringBuilder result = new StringBuilder();
-		result.append("[");
-		int commaNum = myEntryNum - 1;
-		Node node;
-	
-		for (int i = 0; i < myCapacity; i++) {
-			node = myNodes[i];
-			
-			if (node != null) {
-				result.append(node.toString());
+	private void insert(final int theIndex, final int theHash, final Object theKey,
+			final Object theValue) {
+		int i = theIndex;
+		int h = theHash;
+		Object key = theKey;
+		Object value = theValue;
+		int dist = distance(index(h, myCapacity), i);
+		boolean referenced = true;
+		int residentHash;
+		int residentDist;
+		Object residentKey;
+		Object residentValue;
+		boolean residentReferenced;
+		
+		while (myKeys[i] != null) {
+			residentHash = hashAt(i);
+			residentDist = distance(index(residentHash, myCapacity), i);
 			
-				if (commaNum > 0) {
-					result.append(", ");
-					commaNum--;
+			if (myRobinHood && residentDist < dist) {
+				residentKey = myKeys[i];
+				residentValue = myValues[i];
+				residentReferenced = myReferenced != null && myReferenced[i];
+				unrecordStats(residentDist + 1);
+				recordStats(dist + 1);
+				place(i, h, key, value);
+				
+				if (myReferenced != null) {
+					myReferenced[i] = referenced;
 				}
+				
+				h = residentHash;
+				key = residentKey;
+				value = residentValue;
+				referenced = residentReferenced;
+				dist = residentDist;
 			}
+			
+			i = next(i, myCapacity);
+			dist++;
 		}
 		
-		result.append("]");
-		return result.toString();
+		recordStats(dist + 1);
+		place(i, h, key, value);
+		
+		if (myReferenced != null) {
+			myReferenced[i] = referenced;
+		}
 	}
 	
 	/**
-	 * This is a private class for Node.
+	 * This evicts one entry chosen by the CLOCK policy. The hand sweeps the
+	 * slots, giving every entry used since the last sweep a second chance by
+	 * clearing its reference bit, and evicts the first entry whose bit is
+	 * already clear. Each bit cleared is paid for by an earlier use, so an
+	 * eviction takes constant time on average.
 	 */
-	private class Node {
-		
-		/**
-		 * This is a key stored in this node.
-		 */
-		public K myKey;
+	private void evict() {
+		while (myKeys[myClockHand] == null || myReferenced[myClockHand]) {
+			if (myKeys[myClockHand] != null) {
+				myReferenced[myClockHand] = false;
+			}
+			
+			myClockHand = next(myClockHand, myCapacity);
+		}
 		
-		/**
-		 * This is a value stored in this node.
-		 */
-		public V myValue;
+		// the hand stays, since the slot may now hold an entry shifted back
+		// from further along that it hasn't looked at yet
+		unrecordStats(distance(index(hashAt(myClockHand), myCapacity), myClockHand) + 1);
+		shiftBack(myClockHand);
+		myEntryNum--;
+		myEvictions++;
+	}
+	
+	/**
+	 * This checks whether or not the key at a given index of the array equals
+	 * a given key. A cached hash code is compared first so most different
+	 * keys are told apart without calling equals.
+	 * 
+	 * @param theIndex is the index of an occupied slot
+	 * @param theHash is the hash code of the given key
+	 * @param theKey is the given key
+	 * @return true if they are equal. Otherwise, false.
+	 */
+	private boolean matches(final int theIndex, final int theHash, final K theKey) {
+		return (myHashes == null || myHashes[theIndex] == theHash)
+				&& myKeys[theIndex].equals(theKey);
+	}
+	
+	/**
+	 * This stores a key and value at a given index of the array.
+	 * 
+	 * @param theIndex is the given index
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the key
+	 * @param theValue is the value
+	 */
+	private void place(final int theIndex, final int theHash, final Object theKey,
+			final Object theValue) {
+		myKeys[theIndex] = theKey;
+		myValues[theIndex] = theValue;
 		
-		/**
-		 * This creates a node with a given key and value.
-		 * 
-		 * @param theKey is the given key
-		 * @param theValue is the given value
-		 */
-		public Node(final K theKey, final V theValue) {
-			myKey = theKey;
-			myValue = theValue;
+		if (myHashes != null) {
+			myHashes[theIndex] = theHash;
+		}
+	}
+	
+	/**
+	 * This rounds a given capacity up to a power of two.
+	 * 
+	 * @param theCapacity is the given capacity
+	 * @return the smallest power of two not less than the capacity
+	 */
+	private static int powerOfTwo(final int theCapacity) {
+		if (theCapacity > 1 << 30) {
+			throw new IllegalArgumentException();
 		}
 		
-		/**
-		 * {@inheritDoc}
+		return theCapacity == 1 ? 1 : Integer.highestOneBit(theCapacity - 1) << 1;
+	}
+	
+	/**
+	 * This finds out the hash code of the key at a given index of the array.
+	 * 
+	 * @param theIndex is the index of an occupied slot
+	 * @return the hash code of the key
+	 */
+	private int hashAt(final int theIndex) {
+		return myHashes != null ? myHashes[theIndex] : myKeys[theIndex].hashCode();
+	}
+	
+	/**
+	 * This finds out the number of entries at which an array of a given
+	 * capacity has to grow.
+	 * 
+	 * @param theCapacity is the capacity of the array
+	 * @return the number of entries allowed in the array
+	 */
+	private int threshold(final int theCapacity) {
+		return Math.min(theCapacity - 1, (int) (theCapacity * myLoadFactor));
+	}
+	
+	/**
+	 * This starts moving all entries into arrays twice as large. Entries are
+	 * moved a few buckets at a time by later puts and gets, so no single call
+	 * pays for copying the whole table.
+	 */
+	private void resize() {
+		// a previous resize still in progress has to finish first
+		finishMigration();
+		
+		if (myCapacity > Integer.MAX_VALUE / 2) {
+			throw new IllegalStateException("Hash table is too large to grow");
+		}
+		
+		myOldKeys = myKeys;
+		myOldValues = myValues;
+		myOldHashes = myHashes;
+		myOldCapacity = myCapacity;
+		myMigrateIndex = 0;
+		myCapacity *= 2;
+		myKeys = new Object[myCapacity];
+		myValues = new Object[myCapacity];
+		myHashes = myHashes != null ? new int[myCapacity] : null;
+		myReferenced = myReferenced != null ? new boolean[myCapacity] : null;
+		myThreshold = threshold(myCapacity);
+		
+		// probe lengths are only kept for entries living in the new array
+		Arrays.fill(myHistogram, 0);
+		myProbMax = 0;
+		myProbSum = 0;
+		myProbSquareSum = 0;
+	}
+	
+	/**
+	 * This moves the next few buckets of the old arrays into the new arrays
+	 * when a resize is in progress.
+	 */
+	private void migrate() {
+		if (myOldKeys != null) {
+			migrate(MIGRATE_STEP);
+		}
+	}
+	
+	/**
+	 * This moves all remaining buckets of the old arrays into the new arrays.
+	 */
+	private void finishMigration() {
+		if (myOldKeys != null) {
+			migrate(myOldCapacity);
+		}
+	}
+	
+	/**
+	 * This moves a given number of buckets of the old arrays into the new
+	 * arrays and drops the old arrays once they are empty.
+	 * 
+	 * @param theBuckets is the number of buckets to move
+	 */
+	private void migrate(final int theBuckets) {
+		final int end = Math.min(myOldCapacity, myMigrateIndex + theBuckets);
+		Object key;
+		int h;
+		
+		for (; myMigrateIndex < end; myMigrateIndex++) {
+			key = myOldKeys[myMigrateIndex];
+			
+			if (key != null && key != MOVED) {
+				h = myOldHashes != null ? myOldHashes[myMigrateIndex] : key.hashCode();
+				insert(index(h, myCapacity), h, key, myOldValues[myMigrateIndex]);
+				
+				// the slot keeps a marker so later probes in the old array
+				// still walk past it
+				myOldKeys[myMigrateIndex] = MOVED;
+				myOldValues[myMigrateIndex] = null;
+			}
+		}
+		
+		if (myMigrateIndex == myOldCapacity) {
+			myOldKeys = null;
+			myOldValues = null;
+			myOldHashes = null;
+			myOldCapacity = 0;
+			myMigrateIndex = 0;
+		}
+	}
+	
+	/**
+	 * This finds a given key in the old arrays.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the given key
+	 * @return index of the key in the old arrays or -1 if it isn't there
+	 */
+	private int findOld(final int theHash, final K theKey) {
+		int i = index(theHash, myOldCapacity);
+		Object key = myOldKeys[i];
+		
+		// moved markers keep the probe going, only an empty slot stops it
+		for (int probTimes = 1; key != null && probTimes <= myOldCapacity; probTimes++) {
+			if (key != MOVED && (myOldHashes == null || myOldHashes[i] == theHash)
+					&& key.equals(theKey)) {
+				return i;
+			}
+			
+			i = next(i, myOldCapacity);
+			key = myOldKeys[i];
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * This takes a given key out of the old arrays if it is still there.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the given key
+	 * @return true if the key was in the old arrays. Otherwise, false.
+	 */
+	private boolean removeOld(final int theHash, final K theKey) {
+		final int i = findOld(theHash, theKey);
+		
+		if (i < 0) {
+			return false;
+		}
+		
+		myOldKeys[i] = MOVED;
+		myOldValues[i] = null;
+		return true;
+	}
+	
+	/**
+	 * This records and updates max probe length, sum of probes, and histrogram
+	 * of probes for a key placed in the array.
+	 * 
+	 * @param theProbeTimes is number of probes spent on finding a location for
+	 * the key
+	 */
+	private void recordStats(final int theProbeTimes) {
+		if (!myStats) {
+			return;
+		}
+		
+		if (theProbeTimes > myHistogram.length) {
+			myHistogram = Arrays.copyOf(myHistogram,
+					Math.max(theProbeTimes, myHistogram.length * 2));
+		}
+		
+		myHistogram[theProbeTimes - 1]++;
+		myProbSum += theProbeTimes;
+		myProbSquareSum += (long) theProbeTimes * theProbeTimes;
+		
+		if (theProbeTimes > myProbMax) {
+			myProbMax = theProbeTimes;
+		}
+	}
+	
+	/**
+	 * This takes a key that leaves its slot out of max probe length, sum of
+	 * probes, and histrogram of probes.
+	 * 
+	 * @param theProbeTimes is number of probes the key had been recorded with
+	 */
+	private void unrecordStats(final int theProbeTimes) {
+		if (!myStats) {
+			return;
+		}
+		
+		myHistogram[theProbeTimes - 1]--;
+		myProbSum -= theProbeTimes;
+		myProbSquareSum -= (long) theProbeTimes * theProbeTimes;
+		
+		while (myProbMax > 0 && myHistogram[myProbMax - 1] == 0) {
+			myProbMax--;
+		}
+	}
+	
+	/**
+	 * This records the probe length of a put or of a call acting like one.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theFound is what find returned for the key
+	 */
+	private void recordPut(final int theHash, final int theFound) {
+		if (myStats) {
+			final int probes = probes(theHash, theFound);
+			myPutNum++;
+			myPutProbSum += probes;
+			myPutProbMax = Math.max(myPutProbMax, probes);
+		}
+	}
+	
+	/**
+	 * This records the probe length of a get or of a call acting like one,
+	 * and whether or not it found its key.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theFound is what find returned for the key
+	 * @param theHit is true if the key was found
+	 */
+	private void recordGet(final int theHash, final int theFound, final boolean theHit) {
+		if (myStats) {
+			final int probes = probes(theHash, theFound);
+			myGetNum++;
+			myGetProbSum += probes;
+			myGetProbMax = Math.max(myGetProbMax, probes);
+			
+			if (theHit) {
+				myHits++;
+			} else {
+				myMisses++;
+			}
+		}
+	}
+	
+	/**
+	 * This finds out how many slots of the array find looked at.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theFound is what find returned for the key
+	 * @return number of slots looked at
+	 */
+	private int probes(final int theHash, final int theFound) {
+		final int slot = theFound >= 0 ? theFound : -theFound - 1;
+		return distance(index(theHash, myCapacity), slot) + 1;
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		migrate();
+		final int h = theKey.hashCode();
+		final int i = find(h, theKey);
+		Object value = null;
+		int old;
+		
+		if (i >= 0) {
+			value = myValues[i];
+			
+			if (myReferenced != null) {
+				myReferenced[i] = true;
+			}
+		} else if (myOldKeys != null && (old = findOld(h, theKey)) >= 0) {
+			value = myOldValues[old];
+		}
+		
+		recordGet(h, i, value != null);
+		return (V) value;
+	}
+	
+	/**
+	 * This removes a given key and its value from this hash table. Entries
+	 * following the removed one in its probe chain are shifted back, so no
+	 * deleted markers are left behind and later probes stay short.
+	 * 
+	 * @param theKey is the given key
+	 * @return the value removed or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		migrate();
+		final int h = theKey.hashCode();
+		int i = find(h, theKey);
+		Object value = null;
+		
+		if (i >= 0) {
+			value = myValues[i];
+			unrecordStats(distance(index(h, myCapacity), i) + 1);
+			shiftBack(i);
+		} else if (myOldKeys != null) {
+			i = findOld(h, theKey);
+			
+			if (i >= 0) {
+				value = myOldValues[i];
+				myOldKeys[i] = MOVED;
+				myOldValues[i] = null;
+			}
+		}
+		
+		if (value != null) {
+			myEntryNum--;
+		}
+		
+		return (V) value;
+	}
+	
+	/**
+	 * This empties a given slot of the array and moves back the entries after
+	 * it that can get closer to their home slots.
+	 * 
+	 * @param theIndex is the index of the slot being emptied
+	 */
+	private void shiftBack(final int theIndex) {
+		int hole = theIndex;
+		int i = next(hole, myCapacity);
+		int home;
+		
+		while (myKeys[i] != null) {
+			home = index(hashAt(i), myCapacity);
+			
+			// an entry whose home slot lies between the hole and itself has to
+			// stay, otherwise it would be placed before its home slot
+			if (!between(home, hole, i)) {
+				unrecordStats(distance(home, i) + 1);
+				recordStats(distance(home, hole) + 1);
+				place(hole, hashAt(i), myKeys[i], myValues[i]);
+				
+				if (myReferenced != null) {
+					myReferenced[hole] = myReferenced[i];
+				}
+				
+				hole = i;
+			} else if (myRobinHood) {
+				// Robin Hood keeps a run sorted by home slot, so no entry
+				// after this one can move either
+				break;
+			}
+			
+			i = next(i, myCapacity);
+		}
+		
+		myKeys[hole] = null;
+		myValues[hole] = null;
+		
+		if (myReferenced != null) {
+			myReferenced[hole] = false;
+		}
+	}
+	
+	/**
+	 * This checks whether or not a given index lies in the cyclic range
+	 * (theFrom, theTo] of the array.
+	 * 
+	 * @param theIndex is the given index
+	 * @param theFrom is the exclusive start of the range
+	 * @param theTo is the inclusive end of the range
+	 * @return true if the index is in the range. Otherwise, false.
+	 */
+	private boolean between(final int theIndex, final int theFrom, final int theTo) {
+		if (theFrom <= theTo) {
+			return theFrom < theIndex && theIndex <= theTo;
+		} else {
+			return theFrom < theIndex || theIndex <= theTo;
+		}
+	}
+	
+	/**
+	 * This finds out how many slots a given index is away from a home slot
+	 * going forward in the array.
+	 * 
+	 * @param theHome is the home slot
+	 * @param theIndex is the given index
+	 * @return number of slots between them
+	 */
+	private int distance(final int theHome, final int theIndex) {
+		return theIndex >= theHome ? theIndex - theHome : theIndex + myCapacity - theHome;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final K theKey) {
+		return get(theKey) != null;
+	}
+	
+	/**
+	 * This performs a given action on every entry in one pass over the
+	 * arrays, without building any collection. A resize in progress is
+	 * finished first, so lookups made by the action move nothing and every
+	 * entry is visited. The action may look up keys, but must not add or
+	 * remove them.
+	 * 
+	 * @param theAction is the action taking a key and its value
+	 */
+	public void forEach(final BiConsumer<? super K, ? super V> theAction) {
+		finishMigration();
+		forEach(myKeys, myValues, 0, myCapacity, theAction);
+	}
+	
+	/**
+	 * This performs a given action on every entry, splitting the arrays into
+	 * ranges of slots run as tasks of the common ForkJoinPool. A resize in
+	 * progress is finished first. The action may be called from several
+	 * threads at once; it may look up keys, though the statistics may then
+	 * miss some of those lookups, but must not add or remove keys.
+	 * 
+	 * @param theAction is the action taking a key and its value
+	 */
+	public void forEachParallel(final BiConsumer<? super K, ? super V> theAction) {
+		forEachParallel(ForkJoinPool.commonPool(), theAction);
+	}
+	
+	/**
+	 * This performs a given action on every entry, splitting the arrays into
+	 * ranges of slots run as tasks of a given ForkJoinPool. A resize in
+	 * progress is finished first. The action may be called from several
+	 * threads at once; it may look up keys, though the statistics may then
+	 * miss some of those lookups, but must not add or remove keys.
+	 * 
+	 * @param thePool is the pool running the tasks
+	 * @param theAction is the action taking a key and its value
+	 */
+	public void forEachParallel(final ForkJoinPool thePool,
+			final BiConsumer<? super K, ? super V> theAction) {
+		finishMigration();
+		thePool.invoke(new ForEachTask<K, V>(myKeys, myValues, 0, myCapacity, theAction));
+	}
+	
+	/**
+	 * This performs a given action on the entries in a range of slots of
+	 * given arrays.
+	 * 
+	 * @param theKeys is the key array
+	 * @param theValues is the value array
+	 * @param theFrom is the first slot of the range
+	 * @param theTo is the slot after the last one of the range
+	 * @param theAction is the action taking a key and its value
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> void forEach(final Object[] theKeys, final Object[] theValues,
+			final int theFrom, final int theTo, final BiConsumer<? super K, ? super V> theAction) {
+		Object key;
+		
+		for (int i = theFrom; i < theTo; i++) {
+			key = theKeys[i];
+			
+			if (key != null) {
+				theAction.accept((K) key, (V) theValues[i]);
+			}
+		}
+	}
+	
+	/**
+	 * This compiles the current entries into an immutable FrozenHashTable,
+	 * placed with a minimal perfect hash so every lookup reads one slot.
+	 * Later changes to this hash table don't affect the frozen one.
+	 * 
+	 * @return the frozen hash table
+	 */
+	public FrozenHashTable<K, V> freeze() {
+		final Object[] keys = new Object[myEntryNum];
+		final Object[] values = new Object[myEntryNum];
+		final Cursor cursor = cursor();
+		
+		for (int i = 0; cursor.next(); i++) {
+			keys[i] = cursor.key();
+			values[i] = cursor.value();
+		}
+		
+		return new FrozenHashTable<K, V>(keys, values);
+	}
+	
+	/**
+	 * This writes the slot array of this hash table to a file in one pass,
+	 * encoding keys and values with given codecs. The file can be opened as a
+	 * MappedHashTable, which serves lookups from the file without inserting
+	 * the entries again. Keys must have hash codes that stay the same from
+	 * one run to the next, as strings and boxed numbers do.
+	 * 
+	 * @param thePath is the file to write
+	 * @param theKeyCodec is the codec for keys
+	 * @param theValueCodec is the codec for values
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeSnapshot(final Path thePath, final MappedHashTable.Codec<? super K> theKeyCodec,
+			final MappedHashTable.Codec<? super V> theValueCodec) throws IOException {
+		finishMigration();
+		MappedHashTable.write(thePath, myKeys, myValues, myHashes, myCapacity, myPowerOfTwo,
+				myEntryNum, theKeyCodec, theValueCodec);
+	}
+	
+	/**
+	 * This creates a cursor over the entries of this hash table. A resize in
+	 * progress is finished first.
+	 * 
+	 * @return a cursor placed before the first entry
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	
+	/**
+	 * This builds a set of keys.
+	 * 
+	 * @return the set of keys
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<K> keySet() {
+		finishMigration();
+		final Set<K> set = new HashSet<K>();
+		
+		for (int i = 0; i < myCapacity; i++) {
+			if (myKeys[i] != null) {
+				set.add((K) myKeys[i]);
+			}
+		}
+		
+		return set;
+	}
+	
+	/**
+	 * This takes a snapshot of the statistics of this hash table without
+	 * counting clusters. Counters are copied as they are, so it costs no
+	 * more than the length of the probe histogram and can be polled on a
+	 * table of any size. A resize in progress is left alone, and the probe
+	 * histogram then covers the entries already moved into the new array.
+	 * If statistics are switched off in the settings, the probe and lookup
+	 * counters all stay 0.
+	 * 
+	 * @return the snapshot
+	 */
+	public StatsSnapshot snapshot() {
+		return snapshot(false);
+	}
+	
+	/**
+	 * This takes a snapshot of the statistics of this hash table, counting
+	 * clusters too if asked to. Clusters are counted by one scan over all
+	 * slots after finishing a resize in progress, so this is meant for
+	 * occasional inspection rather than polling.
+	 * 
+	 * @param theClusters is true to count clusters
+	 * @return the snapshot
+	 */
+	public StatsSnapshot snapshot(final boolean theClusters) {
+		if (theClusters) {
+			finishMigration();
+		}
+		
+		return new StatsSnapshot(myEntryNum, myCapacity, Arrays.copyOf(myHistogram, myProbMax),
+				myProbSum, myProbSquareSum, myPutNum, myPutProbSum, myPutProbMax, myGetNum,
+				myGetProbSum, myGetProbMax, myHits, myMisses, myMaxEntries, myEvictions,
+				theClusters ? clusters() : null);
+	}
+	
+	/**
+	 * This counts the runs of occupied slots by length. The scan starts after
+	 * an empty slot, so no run is split by the end of the array; there is
+	 * always one since the array grows before it is full.
+	 * 
+	 * @return histogram of clusters, where element i counts the runs of i + 1
+	 * slots
+	 */
+	private int[] clusters() {
+		int[] clusters = new int[8];
+		int longest = 0;
+		int start = 0;
+		
+		while (myKeys[start] != null) {
+			start++;
+		}
+		
+		int i = start;
+		int length = 0;
+		
+		do {
+			i = next(i, myCapacity);
+			
+			if (myKeys[i] != null) {
+				length++;
+			} else if (length > 0) {
+				if (length > clusters.length) {
+					clusters = Arrays.copyOf(clusters, Math.max(length, clusters.length * 2));
+				}
+				
+				clusters[length - 1]++;
+				longest = Math.max(longest, length);
+				length = 0;
+			}
+		} while (i != start);
+		
+		return Arrays.copyOf(clusters, longest);
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table.
+	 */
+	public void stats() {
+		System.out.print(snapshot(true));
+	}
+	
+	/**
+	 * This determines where a key with a given hash code should be placed in
+	 * the array.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theCapacity is the size of the array
+	 * @return index of the array in where this key should be placed
+	 */
+	private int index(final int theHash, final int theCapacity) {
+		return index(theHash, theCapacity, myPowerOfTwo);
+	}
+	
+	/**
+	 * This determines where a key with a given hash code should be placed in
+	 * an array of a given layout. Tables loaded from a snapshot use it to
+	 * probe the same slots the snapshot was written with.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theCapacity is the size of the array
+	 * @param thePowerOfTwo tells whether or not the capacity is a power of two
+	 * indexed by masking
+	 * @return index of the array in where this key should be placed
+	 */
+	static int index(final int theHash, final int theCapacity, final boolean thePowerOfTwo) {
+		if (thePowerOfTwo) {
+			return spread(theHash) & (theCapacity - 1);
+		} else {
+			return Math.abs(theHash % theCapacity);
+		}
+	}
+	
+	/**
+	 * This mixes all bits of a hash code into the low bits, using the
+	 * finalizer of MurmurHash3. Weak hash codes such as sequential integers or
+	 * multiples of a power of two would otherwise fill only a few runs of
+	 * slots once the high bits are masked off.
+	 * 
+	 * @param theHash is the hash code
+	 * @return the mixed hash code
+	 */
+	private static int spread(final int theHash) {
+		int h = theHash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * This finds the slot following a given index, wrapping around at the end
+	 * of the array without a division.
+	 * 
+	 * @param theIndex is the given index
+	 * @param theCapacity is the size of the array
+	 * @return the index of the next slot
+	 */
+	private static int next(final int theIndex, final int theCapacity) {
+		return theIndex + 1 == theCapacity ? 0 : theIndex + 1;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		finishMigration();
+		final StringBuilder result = new StringBuilder();
+		result.append("[");
+		int commaNum = myEntryNum - 1;
+		
+		for (int i = 0; i < myCapacity; i++) {
+			if (myKeys[i] != null) {
+				result.append("(");
+				result.append(myKeys[i]);
+				result.append(", ");
+				result.append(myValues[i]);
+				result.append(")");
+				
+				if (commaNum > 0) {
+					result.append(", ");
+					commaNum--;
+				}
+			}
+		}
+		
+		result.append("]");
+		return result.toString();
+	}
+	
+	/**
+	 * This is a cursor walking the slots of a hash table directly. Unlike an
+	 * Iterator it doesn't create an object for each entry, and one cursor can
+	 * be reset and used for any number of scans. Creating or resetting a
+	 * cursor finishes a resize in progress, so keys may be looked up while a
+	 * scan is going on, but must not be added or removed.
+	 */
+	public class Cursor {
+		
+		/**
+		 * This is the key array being walked.
+		 */
+		private Object[] myCursorKeys;
+		
+		/**
+		 * This is the value array being walked.
+		 */
+		private Object[] myCursorValues;
+		
+		/**
+		 * This is the slot of the current entry.
+		 */
+		private int myIndex;
+		
+		/**
+		 * This creates a cursor placed before the first entry.
+		 */
+		private Cursor() {
+			reset();
+		}
+		
+		/**
+		 * This places this cursor before the first entry again, finishing a
+		 * resize in progress.
+		 */
+		public void reset() {
+			finishMigration();
+			myCursorKeys = myKeys;
+			myCursorValues = myValues;
+			myIndex = -1;
+		}
+		
+		/**
+		 * This moves this cursor to the next entry.
+		 * 
+		 * @return true if there is a next entry. Otherwise, false.
+		 */
+		public boolean next() {
+			while (myIndex + 1 < myCursorKeys.length) {
+				myIndex++;
+				
+				if (myCursorKeys[myIndex] != null) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * This finds out the key of the current entry.
+		 * 
+		 * @return the key
+		 */
+		@SuppressWarnings("unchecked")
+		public K key() {
+			return (K) myCursorKeys[myIndex];
+		}
+		
+		/**
+		 * This finds out the value of the current entry.
+		 * 
+		 * @return the value
+		 */
+		@SuppressWarnings("unchecked")
+		public V value() {
+			return (V) myCursorValues[myIndex];
+		}
+		
+		/**
+		 * This replaces the value of the current entry in place.
+		 * 
+		 * @param theValue is the new value
+		 */
+		public void setValue(final V theValue) {
+			if (theValue == null) {
+				throw new IllegalArgumentException();
+			}
+			
+			myCursorValues[myIndex] = theValue;
+		}
+	}
+	
+	/**
+	 * This is a task performing an action on the entries of a range of slots,
+	 * splitting the range in halves until it is small enough.
+	 */
+	private static class ForEachTask<K, V> extends RecursiveAction {
+		
+		/**
+		 * This is a version number for serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * This is the key array.
+		 */
+		private final Object[] myTaskKeys;
+		
+		/**
+		 * This is the value array.
+		 */
+		private final Object[] myTaskValues;
+		
+		/**
+		 * This is the first slot of the range.
+		 */
+		private final int myFrom;
+		
+		/**
+		 * This is the slot after the last one of the range.
+		 */
+		private final int myTo;
+		
+		/**
+		 * This is the action taking a key and its value.
+		 */
+		private final BiConsumer<? super K, ? super V> myAction;
+		
+		/**
+		 * This creates a task for a range of slots.
+		 * 
+		 * @param theKeys is the key array
+		 * @param theValues is the value array
+		 * @param theFrom is the first slot of the range
+		 * @param theTo is the slot after the last one of the range
+		 * @param theAction is the action taking a key and its value
+		 */
+		private ForEachTask(final Object[] theKeys, final Object[] theValues, final int theFrom,
+				final int theTo, final BiConsumer<? super K, ? super V> theAction) {
+			myTaskKeys = theKeys;
+			myTaskValues = theValues;
+			myFrom = theFrom;
+			myTo = theTo;
+			myAction = theAction;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		protected void compute() {
+			if (myTo - myFrom <= PARALLEL_SLOTS) {
+				forEach(myTaskKeys, myTaskValues, myFrom, myTo, myAction);
+			} else {
+				final int middle = (myFrom + myTo) >>> 1;
+				invokeAll(new ForEachTask<K, V>(myTaskKeys, myTaskValues, myFrom, middle, myAction),
+						new ForEachTask<K, V>(myTaskKeys, myTaskValues, middle, myTo, myAction));
+			}
+		}
+	}
+	
+	/**
+	 * This is a class holding settings used to build a hash table.
+	 */
+	public static class Settings {
+		
+		/**
+		 * This is the maximum fill ratio before the arrays grow.
+		 */
+		private double myLoadFactor;
+		
+		/**
+		 * This tells whether or not hash codes of keys are cached in an array.
+		 */
+		private boolean myCacheHashes;
+		
+		/**
+		 * This tells whether or not the capacity is rounded to a power of two.
+		 */
+		private boolean myPowerOfTwo;
+		
+		/**
+		 * This tells whether or not Robin Hood probing is used.
+		 */
+		private boolean myRobinHood;
+		
+		/**
+		 * This is the maximum number of entries, or 0 for no bound.
+		 */
+		private int myMaxEntries;
+		
+		/**
+		 * This tells whether or not statistics are kept.
+		 */
+		private boolean myStats;
+		
+		/**
+		 * This creates settings with the default load factor, without cached
+		 * hash codes, with the capacity used as given, with plain linear
+		 * probing, without a bound on the number of entries and with
+		 * statistics kept.
+		 */
+		public Settings() {
+			myLoadFactor = DEFAULT_LOAD_FACTOR;
+			myCacheHashes = false;
+			myPowerOfTwo = false;
+			myRobinHood = false;
+			myMaxEntries = 0;
+			myStats = true;
+		}
+		
+		/**
+		 * This sets the maximum fill ratio before the arrays grow.
+		 * 
+		 * @param theLoadFactor is the fill ratio, between 0 and 1
+		 * @return these settings
+		 */
+		public Settings loadFactor(final double theLoadFactor) {
+			if (!(theLoadFactor > 0 && theLoadFactor < 1)) {
+				throw new IllegalArgumentException();
+			}
+			
+			myLoadFactor = theLoadFactor;
+			return this;
+		}
+		
+		/**
+		 * This sets whether or not hash codes of keys are cached in an int
+		 * array next to the keys. Caching costs 4 bytes per slot and saves
+		 * calls to hashCode and equals while probing and resizing.
+		 * 
+		 * @param theCacheHashes is true to cache hash codes
+		 * @return these settings
+		 */
+		public Settings cacheHashes(final boolean theCacheHashes) {
+			myCacheHashes = theCacheHashes;
+			return this;
+		}
+		
+		/**
+		 * This sets whether or not the capacity is rounded up to a power of
+		 * two. Indexes are then found by masking a mixed hash code, which is
+		 * cheaper than a division and spreads weak hash codes evenly.
+		 * 
+		 * @param thePowerOfTwo is true to round the capacity
+		 * @return these settings
+		 */
+		public Settings powerOfTwo(final boolean thePowerOfTwo) {
+			myPowerOfTwo = thePowerOfTwo;
+			return this;
+		}
+		
+		/**
+		 * This sets whether or not Robin Hood probing is used. A new entry
+		 * takes the slot of any entry closer to its home slot, which keeps
+		 * probe lengths close to the average even at high fill, and a lookup
+		 * can stop as soon as it has gone further than the entry it reaches.
+		 * It works best with cached hash codes, since every probe step needs
+		 * the home slot of the entry it visits.
+		 * 
+		 * @param theRobinHood is true to use Robin Hood probing
+		 * @return these settings
+		 */
+		public Settings robinHood(final boolean theRobinHood) {
+			myRobinHood = theRobinHood;
+			return this;
+		}
+		
+		/**
+		 * This bounds the number of entries, turning the hash table into a
+		 * cache. Once it holds the given number of entries, putting a new key
+		 * first evicts an entry not used recently, chosen by the CLOCK policy
+		 * over one reference bit per slot. The arrays are sized up front so
+		 * they never grow.
+		 * 
+		 * @param theMaxEntries is the maximum number of entries, or 0 for no
+		 * bound
+		 * @return these settings
+		 */
+		public Settings maxEntries(final int theMaxEntries) {
+			if (theMaxEntries < 0) {
+				throw new IllegalArgumentException();
+			}
+			
+			myMaxEntries = theMaxEntries;
+			return this;
+		}
+		
+		/**
+		 * This sets whether or not statistics are kept. Keeping them costs a
+		 * few counter updates per call and a histogram array; without them,
+		 * snapshots and stats only report entries, slots and clusters.
+		 * 
+		 * @param theStats is true to keep statistics
+		 * @return these settings
 		 */
-		public String toString() {
-			final StringBuilder result = new StringBuilder();
-			result.append("(");
-			result.append(myKey);
-			result.append(", ");
-			result.append(myValue);
-			result.append(")");
-			return result.toString();
+		public Settings stats(final boolean theStats) {
+			myStats = theStats;
+			return this;
 		}
 	}
 }
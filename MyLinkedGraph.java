@@ -1,12 +1,11 @@
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * This is a undirected graph using adjacency list implementation. 
@@ -20,11 +19,18 @@ public class MyLinkedGraph {
 	 */
 	private Map<String, Node> nodes; 
 	
+	/**
+	 * This keeps all nodes ever added, where the node with id i is at index
+	 * i. Traversals keep their state in arrays and bit sets indexed by id.
+	 */
+	private List<Node> nodesById;
+	
 	/**
 	 * This is a constructor of this class.
 	 */
 	public MyLinkedGraph() {
 		nodes = new HashMap<String, Node>();
+		nodesById = new ArrayList<Node>();
 	}
 	
 	/**
@@ -33,7 +39,9 @@ public class MyLinkedGraph {
 	 * @param content is the content saved in the node
 	 */
 	public void addNode(String content) {
-		nodes.put(content, new Node(content));
+		Node node = new Node(content, nodesById.size());
+		nodes.put(content, node);
+		nodesById.add(node);
 	}
 	
 	/**
@@ -52,6 +60,173 @@ public class MyLinkedGraph {
 		}
 	}
 	
+	/**
+	 * This visits the nodes reachable from a given node in breadth-first
+	 * order, starting with the node itself.
+	 * 
+	 * @param start is the content of the given node
+	 * @param visitor is the action taking the content of each node
+	 */
+	public void bfs(String start, Consumer<String> visitor) {
+		Node[] queue = new Node[nodesById.size()];
+		BitSet visited = new BitSet(nodesById.size());
+		int tail = 0;
+		queue[tail++] = getNode(start);
+		visited.set(queue[0].id);
+		
+		for (int head = 0; head < tail; head++) {
+			Node node = queue[head];
+			visitor.accept(node.content);
+			
+			for (Node neighbor : node.neighbors) {
+				if (!visited.get(neighbor.id)) {
+					visited.set(neighbor.id);
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This visits the nodes reachable from a given node in depth-first order,
+	 * starting with the node itself. Each node on the stack keeps the position
+	 * of the next neighbor to look at, so no node is pushed twice.
+	 * 
+	 * @param start is the content of the given node
+	 * @param visitor is the action taking the content of each node
+	 */
+	public void dfs(String start, Consumer<String> visitor) {
+		Node[] stack = new Node[nodesById.size()];
+		int[] positions = new int[nodesById.size()];
+		BitSet visited = new BitSet(nodesById.size());
+		int size = 0;
+		stack[size++] = getNode(start);
+		visited.set(stack[0].id);
+		visitor.accept(stack[0].content);
+		
+		while (size > 0) {
+			Node node = stack[size - 1];
+			
+			if (positions[size - 1] == node.neighbors.size()) {
+				size--;
+				continue;
+			}
+			
+			Node neighbor = node.neighbors.get(positions[size - 1]++);
+			
+			if (!visited.get(neighbor.id)) {
+				visited.set(neighbor.id);
+				visitor.accept(neighbor.content);
+				stack[size] = neighbor;
+				positions[size] = 0;
+				size++;
+			}
+		}
+	}
+	
+	/**
+	 * This finds a path with the fewest edges between two given nodes.
+	 * 
+	 * @param from is the content of the node where the path starts
+	 * @param to is the content of the node where the path ends
+	 * @return the contents of the nodes on the path, in order, or an empty
+	 * list if there is no path
+	 */
+	public List<String> shortestPath(String from, String to) {
+		Node source = getNode(from);
+		Node target = getNode(to);
+		Node[] queue = new Node[nodesById.size()];
+		int[] parents = new int[nodesById.size()];
+		BitSet visited = new BitSet(nodesById.size());
+		int tail = 0;
+		queue[tail++] = source;
+		visited.set(source.id);
+		parents[source.id] = -1;
+		
+		for (int head = 0; head < tail && !visited.get(target.id); head++) {
+			Node node = queue[head];
+			
+			for (Node neighbor : node.neighbors) {
+				if (!visited.get(neighbor.id)) {
+					visited.set(neighbor.id);
+					parents[neighbor.id] = node.id;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		
+		if (!visited.get(target.id)) {
+			return Collections.emptyList();
+		}
+		
+		List<String> path = new ArrayList<String>();
+		
+		for (int id = target.id; id != -1; id = parents[id]) {
+			path.add(nodesById.get(id).content);
+		}
+		
+		Collections.reverse(path);
+		return path;
+	}
+	
+	/**
+	 * This finds the nodes at most a given number of edges away from a given
+	 * node, in breadth-first order starting with the node itself.
+	 * 
+	 * @param from is the content of the given node
+	 * @param maxHops is the largest number of edges to follow
+	 * @return the contents of the nodes reached
+	 */
+	public List<String> reachable(String from, int maxHops) {
+		if (maxHops < 0) {
+			throw new IllegalArgumentException();
+		}
+		
+		Node[] queue = new Node[nodesById.size()];
+		BitSet visited = new BitSet(nodesById.size());
+		int tail = 0;
+		queue[tail++] = getNode(from);
+		visited.set(queue[0].id);
+		
+		for (int head = 0, hops = 0; hops < maxHops && head < tail; hops++) {
+			int end = tail;
+			
+			for (; head < end; head++) {
+				for (Node neighbor : queue[head].neighbors) {
+					if (!visited.get(neighbor.id)) {
+						visited.set(neighbor.id);
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+		
+		List<String> result = new ArrayList<String>(tail);
+		
+		for (int i = 0; i < tail; i++) {
+			result.add(queue[i].content);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * This finds the node with a given content.
+	 * 
+	 * @param content is the given content
+	 * @return the node
+	 * @throws IllegalArgumentException if no node has the content
+	 */
+	private Node getNode(String content) {
+		Node node = nodes.get(content);
+		
+		if (node == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		return node;
+	}
+	
 	/**
 	 * This outputs the graph in a String.
 	 * 
@@ -91,13 +266,20 @@ public class MyLinkedGraph {
 		 */
 		private String content;
 		
+		/**
+		 * This is the id of this node, given in the order nodes are added.
+		 */
+		private int id;
+		
 		/**
 		 * This is a constructor of this class.
 		 * 
 		 * @param content is a String stored in this node
+		 * @param id is the id of this node
 		 */
-		private Node(String content) {
+		private Node(String content, int id) {
 			this.content = content;
+			this.id = id;
 			neighbors = new ArrayList<Node>();
 		}
 	}
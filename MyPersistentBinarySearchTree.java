@@ -0,0 +1,549 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This is a self-balancing binary search tree whose nodes never change once
+ * built. Adding or removing a value copies only the nodes on the path to it,
+ * and the nodes made by rebalancing, while every other subtree is shared with
+ * the old version. The new root is then published with a compare-and-set.
+ * 
+ * So any number of threads can read this BST while others write it, with no
+ * locks. A read works on the root it loaded at its start, which is a
+ * consistent version of the BST that nothing will change, and a snapshot can
+ * be kept to run several reads on the same version. Writers retry when
+ * another writer published first.
+ * 
+ * @author Qing Bai
+ */
+public class MyPersistentBinarySearchTree {
+	
+	/**
+	 * This is the root of the current version of this BST.
+	 */
+	private final AtomicReference<Node> root;
+	
+	/**
+	 * This is a constructor of this BST.
+	 */
+	public MyPersistentBinarySearchTree() {
+		this.root = new AtomicReference<Node>();
+	}
+	
+	/**
+	 * This adds one given value into this BST.
+	 * 
+	 * @param val is the given value
+	 */
+	public void add(int val) {
+		Node current;
+		Node updated;
+		
+		do {
+			current = this.root.get();
+			updated = add(current, val);
+		} while (!this.root.compareAndSet(current, updated));
+	}
+	
+	/**
+	 * This removes a given value in this BST if the value exists.
+	 * 
+	 * @param val is the value
+	 */
+	public void remove(int val) {
+		Node current;
+		Node updated;
+		
+		do {
+			current = this.root.get();
+			updated = remove(current, val);
+		} while (updated != current && !this.root.compareAndSet(current, updated));
+	}
+	
+	/**
+	 * This takes the current version of this BST. Later changes to this BST
+	 * don't show in the snapshot.
+	 * 
+	 * @return a snapshot of this BST
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this.root.get());
+	}
+	
+	/**
+	 * This checks whether or not a given value exists in the BST.
+	 * 
+	 * @param val is the given value
+	 * @return true if the value exists in the tree, otherwise, false
+	 */
+	public boolean contains(int val) {
+		return contains(this.root.get(), val);
+	}
+	
+	/**
+	 * This finds out the number of values in this BST.
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return size(this.root.get());
+	}
+	
+	/**
+	 * This finds the depth of this BST.
+	 * 
+	 * @return an integer for the depth of this BST.
+	 */
+	public int depth() {
+		return height(this.root.get()) + 1;
+	}
+	
+	/**
+	 * This gives the values of the current version of this BST in ascending
+	 * order.
+	 * 
+	 * @return an iterator over the values
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return new InOrderIterator(this.root.get());
+	}
+	
+	/**
+	 * This gives a stream of the values of the current version of this BST in
+	 * ascending order.
+	 * 
+	 * @return a stream of the values
+	 */
+	public IntStream stream() {
+		return stream(this.root.get());
+	}
+	
+	/**
+	 * This passes the values of the current version of this BST between two
+	 * given values, both included, to a given action in ascending order.
+	 * 
+	 * @param low is the lower bound
+	 * @param high is the upper bound
+	 * @param action is the action taking each value
+	 */
+	public void rangeScan(int low, int high, IntConsumer action) {
+		rangeScan(this.root.get(), low, high, action);
+	}
+	
+	/**
+	 * This returns contents in this BST using inorder.
+	 * 
+	 * @return a String containing values in this BST
+	 */
+	public String toString() {
+		return toString(this.root.get());
+	}
+	
+	/**
+	 * This is a helper method of add(). It copies the nodes on the way down.
+	 * 
+	 * @param node is the root of a subtree
+	 * @param val is the given value
+	 * @return the root of a new subtree with the value
+	 */
+	private static Node add(Node node, int val) {
+		if (node == null) {
+			return new Node(val, null, null);
+		} else if (node.val > val) {
+			return balance(node.val, add(node.leftChild, val), node.rightChild);
+		} else {
+			return balance(node.val, node.leftChild, add(node.rightChild, val));
+		}
+	}
+	
+	/**
+	 * This is a helper method of remove(). It copies the nodes on the way down
+	 * to the value, and a node with two children is replaced by a copy taking
+	 * the maximum value of its left subtree.
+	 * 
+	 * @param node is the root of a subtree
+	 * @param val is the value
+	 * @return the root of a new subtree without the value, or the same root
+	 * if the value doesn't exist
+	 */
+	private static Node remove(Node node, int val) {
+		if (node == null) {
+			return null;
+		} else if (node.val > val) {
+			Node left = remove(node.leftChild, val);
+			return left == node.leftChild ? node : balance(node.val, left, node.rightChild);
+		} else if (node.val < val) {
+			Node right = remove(node.rightChild, val);
+			return right == node.rightChild ? node : balance(node.val, node.leftChild, right);
+		} else if (node.leftChild == null) {
+			return node.rightChild;
+		} else if (node.rightChild == null) {
+			return node.leftChild;
+		}
+		
+		Node max = node.leftChild;
+		
+		while (max.rightChild != null) {
+			max = max.rightChild;
+		}
+		
+		return balance(max.val, removeMax(node.leftChild), node.rightChild);
+	}
+	
+	/**
+	 * This is a helper method of remove().
+	 * 
+	 * @param node is the root of a subtree
+	 * @return the root of a new subtree without its maximum value
+	 */
+	private static Node removeMax(Node node) {
+		if (node.rightChild == null) {
+			return node.leftChild;
+		}
+		
+		return balance(node.val, node.leftChild, removeMax(node.rightChild));
+	}
+	
+	/**
+	 * This makes a balanced subtree from a value and two subtrees whose
+	 * heights differ by at most two. Rotations build new nodes in place of
+	 * the ones they would change.
+	 * 
+	 * @param val is the value of the root
+	 * @param left is the left subtree
+	 * @param right is the right subtree
+	 * @return the root of the balanced subtree
+	 */
+	private static Node balance(int val, Node left, Node right) {
+		int leftHeight = height(left);
+		int rightHeight = height(right);
+		
+		if (leftHeight > rightHeight + 1) {
+			if (height(left.leftChild) >= height(left.rightChild)) {
+				return new Node(left.val, left.leftChild, new Node(val, left.rightChild, right));
+			}
+			
+			Node mid = left.rightChild;
+			return new Node(mid.val, new Node(left.val, left.leftChild, mid.leftChild),
+					new Node(val, mid.rightChild, right));
+		} else if (rightHeight > leftHeight + 1) {
+			if (height(right.rightChild) >= height(right.leftChild)) {
+				return new Node(right.val, new Node(val, left, right.leftChild), right.rightChild);
+			}
+			
+			Node mid = right.leftChild;
+			return new Node(mid.val, new Node(val, left, mid.leftChild),
+					new Node(right.val, mid.rightChild, right.rightChild));
+		}
+		
+		return new Node(val, left, right);
+	}
+	
+	/**
+	 * This finds out the height of a given subtree.
+	 * 
+	 * @param node is the root of the subtree
+	 * @return the height, or -1 for an empty subtree
+	 */
+	private static int height(Node node) {
+		return node == null ? -1 : node.height;
+	}
+	
+	/**
+	 * This finds out the number of nodes in a given subtree.
+	 * 
+	 * @param node is the root of the subtree
+	 * @return the number of nodes
+	 */
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+	
+	/**
+	 * This checks whether or not a given value exists in a given subtree.
+	 * 
+	 * @param node is the root of the subtree
+	 * @param val is the given value
+	 * @return true if the value exists in the subtree, otherwise, false
+	 */
+	private static boolean contains(Node node, int val) {
+		while (node != null) {
+			if (node.val == val) {
+				return true;
+			}
+			
+			node = node.val > val ? node.leftChild : node.rightChild;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This gives a stream of the values in a given subtree.
+	 * 
+	 * @param node is the root of the subtree
+	 * @return a stream of the values
+	 */
+	private static IntStream stream(Node node) {
+		int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL
+				| Spliterator.IMMUTABLE;
+		Spliterator.OfInt spliterator = Spliterators.spliterator(new InOrderIterator(node), size(node),
+				characteristics);
+		return StreamSupport.intStream(spliterator, false);
+	}
+	
+	/**
+	 * This passes the values in a given subtree between two given values to a
+	 * given action in ascending order, never entering the subtrees outside
+	 * the bounds.
+	 * 
+	 * @param node is the root of the subtree
+	 * @param low is the lower bound
+	 * @param high is the upper bound
+	 * @param action is the action taking each value
+	 */
+	private static void rangeScan(Node node, int low, int high, IntConsumer action) {
+		if (node == null || low > high) {
+			return;
+		}
+		
+		Node[] stack = new Node[node.height + 1];
+		int size = 0;
+		
+		while (node != null) {
+			if (node.val >= low) {
+				stack[size++] = node;
+				node = node.leftChild;
+			} else {
+				node = node.rightChild;
+			}
+		}
+		
+		while (size > 0) {
+			node = stack[--size];
+			
+			if (node.val > high) {
+				return;
+			}
+			
+			action.accept(node.val);
+			node = node.rightChild;
+			
+			while (node != null) {
+				stack[size++] = node;
+				node = node.leftChild;
+			}
+		}
+	}
+	
+	/**
+	 * This returns the values in a given subtree using inorder.
+	 * 
+	 * @param node is the root of the subtree
+	 * @return a String containing the values
+	 */
+	private static String toString(Node node) {
+		StringBuilder result = new StringBuilder("[");
+		rangeScan(node, Integer.MIN_VALUE, Integer.MAX_VALUE, val -> result.append(val).append(','));
+		
+		if (result.length() > 1) {
+			result.setCharAt(result.length() - 1, ']');
+		} else {
+			result.append("]");
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * This is a version of a MyPersistentBinarySearchTree, which never
+	 * changes.
+	 */
+	public static class Snapshot {
+		
+		/**
+		 * This is the root of this version.
+		 */
+		private final Node root;
+		
+		/**
+		 * This is a constructor of this snapshot.
+		 * 
+		 * @param root is the root of the version
+		 */
+		private Snapshot(Node root) {
+			this.root = root;
+		}
+		
+		/**
+		 * This checks whether or not a given value exists in this version.
+		 * 
+		 * @param val is the given value
+		 * @return true if the value exists, otherwise, false
+		 */
+		public boolean contains(int val) {
+			return MyPersistentBinarySearchTree.contains(this.root, val);
+		}
+		
+		/**
+		 * This finds out the number of values in this version.
+		 * 
+		 * @return the number of values
+		 */
+		public int size() {
+			return MyPersistentBinarySearchTree.size(this.root);
+		}
+		
+		/**
+		 * This gives the values in this version in ascending order.
+		 * 
+		 * @return an iterator over the values
+		 */
+		public PrimitiveIterator.OfInt iterator() {
+			return new InOrderIterator(this.root);
+		}
+		
+		/**
+		 * This gives a stream of the values in this version in ascending order.
+		 * 
+		 * @return a stream of the values
+		 */
+		public IntStream stream() {
+			return MyPersistentBinarySearchTree.stream(this.root);
+		}
+		
+		/**
+		 * This passes the values in this version between two given values,
+		 * both included, to a given action in ascending order.
+		 * 
+		 * @param low is the lower bound
+		 * @param high is the upper bound
+		 * @param action is the action taking each value
+		 */
+		public void rangeScan(int low, int high, IntConsumer action) {
+			MyPersistentBinarySearchTree.rangeScan(this.root, low, high, action);
+		}
+		
+		/**
+		 * This returns contents in this version using inorder.
+		 * 
+		 * @return a String containing the values
+		 */
+		public String toString() {
+			return MyPersistentBinarySearchTree.toString(this.root);
+		}
+	}
+	
+	/**
+	 * This is a private class walking a subtree in order with a stack no
+	 * deeper than the subtree.
+	 */
+	private static class InOrderIterator implements PrimitiveIterator.OfInt {
+		
+		/**
+		 * This is the stack of nodes whose values are still to come, with the
+		 * next one on top.
+		 */
+		private final Node[] stack;
+		
+		/**
+		 * This is the number of nodes in the stack.
+		 */
+		private int size;
+		
+		/**
+		 * This is a constructor of this iterator.
+		 * 
+		 * @param root is the root of the subtree
+		 */
+		private InOrderIterator(Node root) {
+			this.stack = new Node[height(root) + 1];
+			push(root);
+		}
+		
+		/**
+		 * This pushes a given node and its left descendants.
+		 * 
+		 * @param node is the given node
+		 */
+		private void push(Node node) {
+			while (node != null) {
+				stack[size++] = node;
+				node = node.leftChild;
+			}
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return size > 0;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public int nextInt() {
+			if (size == 0) {
+				throw new NoSuchElementException();
+			}
+			
+			Node node = stack[--size];
+			push(node.rightChild);
+			return node.val;
+		}
+	}
+	
+	/**
+	 * This is a private class used for creating nodes of this BST. Its fields
+	 * are final, so a node is safe to read from any thread once it is
+	 * reachable.
+	 */
+	private static class Node {
+		
+		/**
+		 * This is a value saved in this node.
+		 */
+		private final int val;
+		
+		/**
+		 * This is the height of this node in the tree.
+		 */
+		private final int height;
+		
+		/**
+		 * This is the number of nodes in the subtree rooted at this node.
+		 */
+		private final int size;
+		
+		/**
+		 * This is left child of this node.
+		 */
+		private final Node leftChild;
+		
+		/**
+		 * This is right child of this node.
+		 */
+		private final Node rightChild;
+		
+		/**
+		 * This is a constructor of this node.
+		 * 
+		 * @param val is a value stored in the node
+		 * @param leftChild is left child of the node
+		 * @param rightChild is right child of the node
+		 */
+		private Node(int val, Node leftChild, Node rightChild) {
+			this.val = val;
+			this.leftChild = leftChild;
+			this.rightChild = rightChild;
+			height = Math.max(height(leftChild), height(rightChild)) + 1;
+			size = size(leftChild) + size(rightChild) + 1;
+		}
+	}
+}
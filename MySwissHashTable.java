@@ -0,0 +1,487 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This is a hash table keeping one control byte per slot, in the way of
+ * SwissTable. A full slot's control byte holds 7 bits of the key's hash, so a
+ * lookup compares a whole group of 8 control bytes against the hash in a few
+ * long operations and only calls equals on slots whose bits match. A lookup
+ * for a missing key usually ends without looking at any key.
+ * 
+ * @author Qing Bai
+ */
+public class MySwissHashTable<K, V> {
+	
+	/**
+	 * This is number of slots whose control bytes are read together.
+	 */
+	private static final int GROUP_WIDTH = 8;
+	
+	/**
+	 * This is the control byte of an empty slot.
+	 */
+	private static final byte EMPTY = (byte) 0x80;
+	
+	/**
+	 * This is the control byte of a slot whose entry has been removed.
+	 */
+	private static final byte DELETED = (byte) 0xFE;
+	
+	/**
+	 * This is a long with the lowest bit of each byte set.
+	 */
+	private static final long LSBS = 0x0101010101010101L;
+	
+	/**
+	 * This is a long with the highest bit of each byte set.
+	 */
+	private static final long MSBS = 0x8080808080808080L;
+	
+	/**
+	 * This reads 8 control bytes as one long.
+	 */
+	private static final VarHandle GROUP =
+			MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	
+	/**
+	 * This is an array of control bytes, one for each slot.
+	 */
+	private byte[] myControl;
+	
+	/**
+	 * This is an array used to store keys in this hash table.
+	 */
+	private Object[] myKeys;
+	
+	/**
+	 * This is an array used to store values, at the same index as their keys.
+	 */
+	private Object[] myValues;
+	
+	/**
+	 * This is the size of the arrays, a power of two of at least 8.
+	 */
+	private int myCapacity;
+	
+	/**
+	 * This is the number of groups minus one, used to mask group indexes.
+	 */
+	private int myGroupMask;
+	
+	/**
+	 * This records number of entries.
+	 */
+	private int myEntryNum;
+	
+	/**
+	 * This records number of slots marked as deleted.
+	 */
+	private int myDeletedNum;
+	
+	/**
+	 * This is histogram of probes, where element i counts the entries found
+	 * after probing i + 1 groups.
+	 */
+	private int[] myHistogram;
+	
+	/**
+	 * This records the maxmium probe length spent on one entry.
+	 */
+	private int myProbMax;
+	
+	/**
+	 * This records sum of probe lengthes of all entries.
+	 */
+	private long myProbSum;
+	
+	/**
+	 * This builds a hash table with a given initial capacity.
+	 * 
+	 * @param theCapacity is the given capacity
+	 */
+	public MySwissHashTable(final int theCapacity) {
+		if (theCapacity < 1 || theCapacity > 1 << 30) {
+			throw new IllegalArgumentException();
+		}
+		
+		init(Math.max(GROUP_WIDTH, Integer.highestOneBit(theCapacity - 1) << 1));
+	}
+	
+	/**
+	 * This sets up empty arrays of a given capacity.
+	 * 
+	 * @param theCapacity is the capacity, a power of two of at least 8
+	 */
+	private void init(final int theCapacity) {
+		myCapacity = theCapacity;
+		myGroupMask = theCapacity / GROUP_WIDTH - 1;
+		myControl = new byte[theCapacity];
+		Arrays.fill(myControl, EMPTY);
+		myKeys = new Object[theCapacity];
+		myValues = new Object[theCapacity];
+		myEntryNum = 0;
+		myDeletedNum = 0;
+		myHistogram = new int[8];
+		myProbMax = 0;
+		myProbSum = 0;
+	}
+	
+	/**
+	 * This adds or updates a new value for a given key.
+	 * 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 */
+	public void put(final K theKey, final V theValue) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		final int h = spread(theKey.hashCode());
+		final int i = find(h, theKey);
+		
+		if (i >= 0) {
+			myValues[i] = theValue;
+		} else {
+			// deleted slots still lengthen probes, so they count towards the
+			// 7/8 fill limit that keeps an empty slot in every probe sequence
+			if (myEntryNum + myDeletedNum >= myCapacity - myCapacity / 8) {
+				rehash();
+			}
+			
+			insert(h, theKey, theValue);
+			myEntryNum++;
+		}
+	}
+	
+	/**
+	 * This searches a given key.
+	 * 
+	 * @param theHash is the spread hash code of the key
+	 * @param theKey is the given key
+	 * @return index of the key or -1 if it doesn't exist
+	 */
+	private int find(final int theHash, final K theKey) {
+		int group = (theHash >>> 7) & myGroupMask;
+		int step = 0;
+		long control;
+		long match;
+		int i;
+		
+		while (true) {
+			control = (long) GROUP.get(myControl, group * GROUP_WIDTH);
+			match = matchTag(control, theHash & 0x7F);
+			
+			while (match != 0) {
+				i = group * GROUP_WIDTH + (Long.numberOfTrailingZeros(match) >>> 3);
+				
+				if (myKeys[i].equals(theKey)) {
+					return i;
+				}
+				
+				match &= match - 1;
+			}
+			
+			// a key is never placed beyond a group with an empty slot
+			if (matchEmpty(control) != 0) {
+				return -1;
+			}
+			
+			step++;
+			group = (group + step) & myGroupMask;
+		}
+	}
+	
+	/**
+	 * This places a key known to be absent in the first empty or deleted slot
+	 * of its probe sequence.
+	 * 
+	 * @param theHash is the spread hash code of the key
+	 * @param theKey is the key
+	 * @param theValue is the value
+	 */
+	private void insert(final int theHash, final Object theKey, final Object theValue) {
+		int group = (theHash >>> 7) & myGroupMask;
+		int step = 0;
+		long free = matchFree((long) GROUP.get(myControl, group * GROUP_WIDTH));
+		
+		while (free == 0) {
+			step++;
+			group = (group + step) & myGroupMask;
+			free = matchFree((long) GROUP.get(myControl, group * GROUP_WIDTH));
+		}
+		
+		final int i = group * GROUP_WIDTH + (Long.numberOfTrailingZeros(free) >>> 3);
+		
+		if (myControl[i] == DELETED) {
+			myDeletedNum--;
+		}
+		
+		myControl[i] = (byte) (theHash & 0x7F);
+		myKeys[i] = theKey;
+		myValues[i] = theValue;
+		recordStats(step + 1);
+	}
+	
+	/**
+	 * This rebuilds the arrays, dropping all deleted slots. The capacity
+	 * doubles unless deleted slots take up most of the fill.
+	 */
+	private void rehash() {
+		final Object[] keys = myKeys;
+		final Object[] values = myValues;
+		final byte[] control = myControl;
+		final int entryNum = myEntryNum;
+		
+		if (myCapacity > 1 << 29) {
+			throw new IllegalStateException("Hash table is too large to grow");
+		}
+		
+		init(entryNum >= myCapacity / 2 ? myCapacity * 2 : myCapacity);
+		
+		for (int i = 0; i < keys.length; i++) {
+			if (control[i] >= 0) {
+				insert(spread(keys[i].hashCode()), keys[i], values[i]);
+			}
+		}
+		
+		myEntryNum = entryNum;
+	}
+	
+	/**
+	 * This searches a given key and returns a value for the key. if the key
+	 * doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int i = find(spread(theKey.hashCode()), theKey);
+		return i < 0 ? null : (V) myValues[i];
+	}
+	
+	/**
+	 * This removes a given key and its value from this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return the value removed or null if the key doesn't exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final K theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int h = spread(theKey.hashCode());
+		final int i = find(h, theKey);
+		
+		if (i < 0) {
+			return null;
+		}
+		
+		final Object value = myValues[i];
+		unrecordStats(probes(h, i / GROUP_WIDTH));
+		myKeys[i] = null;
+		myValues[i] = null;
+		
+		// a probe that reaches a group with an empty slot stops there, so no
+		// other key can be behind this one and the slot can become empty
+		if (matchEmpty((long) GROUP.get(myControl, i - i % GROUP_WIDTH)) != 0) {
+			myControl[i] = EMPTY;
+		} else {
+			myControl[i] = DELETED;
+			myDeletedNum++;
+		}
+		
+		myEntryNum--;
+		return (V) value;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final K theKey) {
+		return get(theKey) != null;
+	}
+	
+	/**
+	 * This builds a set of keys.
+	 * 
+	 * @return the set of keys
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<K> keySet() {
+		final Set<K> set = new HashSet<K>();
+		
+		for (int i = 0; i < myCapacity; i++) {
+			if (myControl[i] >= 0) {
+				set.add((K) myKeys[i]);
+			}
+		}
+		
+		return set;
+	}
+	
+	/**
+	 * This finds out how many groups a key with a given hash probes before
+	 * reaching a given group.
+	 * 
+	 * @param theHash is the spread hash code of the key
+	 * @param theGroup is the group holding the key
+	 * @return number of groups probed
+	 */
+	private int probes(final int theHash, final int theGroup) {
+		int group = (theHash >>> 7) & myGroupMask;
+		int step = 0;
+		
+		while (group != theGroup) {
+			step++;
+			group = (group + step) & myGroupMask;
+		}
+		
+		return step + 1;
+	}
+	
+	/**
+	 * This records and updates max probe length, sum of probes, and histrogram
+	 * of probes for a key placed in the array.
+	 * 
+	 * @param theProbeTimes is number of groups probed to place the key
+	 */
+	private void recordStats(final int theProbeTimes) {
+		if (theProbeTimes > myHistogram.length) {
+			myHistogram = Arrays.copyOf(myHistogram,
+					Math.max(theProbeTimes, myHistogram.length * 2));
+		}
+		
+		myHistogram[theProbeTimes - 1]++;
+		myProbSum += theProbeTimes;
+		
+		if (theProbeTimes > myProbMax) {
+			myProbMax = theProbeTimes;
+		}
+	}
+	
+	/**
+	 * This takes a key that leaves its slot out of max probe length, sum of
+	 * probes, and histrogram of probes.
+	 * 
+	 * @param theProbeTimes is number of groups the key had been recorded with
+	 */
+	private void unrecordStats(final int theProbeTimes) {
+		myHistogram[theProbeTimes - 1]--;
+		myProbSum -= theProbeTimes;
+		
+		while (myProbMax > 0 && myHistogram[myProbMax - 1] == 0) {
+			myProbMax--;
+		}
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table. A probe here
+	 * is one group of 8 slots.
+	 */
+	public void stats() {
+		System.out.println("Hash Table Stats");
+		System.out.println("================================");
+		System.out.printf("Number of Entries: %d\n", myEntryNum);
+		System.out.printf("Number of Buckets: %d\n", myCapacity);
+		System.out.printf("Number of Deleted Buckets: %d\n", myDeletedNum);
+		System.out.print("Histogram of Group Probes: ");
+		System.out.println(Arrays.toString(Arrays.copyOf(myHistogram, myProbMax)));
+		System.out.printf("Fill Percentage: %.6f%%\n", myEntryNum * 100.0 / myCapacity);
+		System.out.printf("Max Group Prob: %d\n", myProbMax);
+		System.out.printf("Average Group Prob: %.6f\n", myProbSum * 1.0 / myEntryNum);
+	}
+	
+	/**
+	 * This finds the bytes of a group equal to a given 7-bit tag. The highest
+	 * bit of each matching byte is set in the result. A byte right above a
+	 * matching one may be reported falsely, which only costs one extra
+	 * equals call.
+	 * 
+	 * @param theControl is the control bytes of a group
+	 * @param theTag is the tag
+	 * @return the matching bytes
+	 */
+	private static long matchTag(final long theControl, final int theTag) {
+		final long x = theControl ^ (LSBS * theTag);
+		return (x - LSBS) & ~x & MSBS;
+	}
+	
+	/**
+	 * This finds the empty slots of a group. An empty byte is the only one
+	 * with its highest bit set and its second lowest bit clear.
+	 * 
+	 * @param theControl is the control bytes of a group
+	 * @return a long with the highest bit of each empty byte set
+	 */
+	private static long matchEmpty(final long theControl) {
+		return theControl & (~theControl << 6) & MSBS;
+	}
+	
+	/**
+	 * This finds the empty or deleted slots of a group.
+	 * 
+	 * @param theControl is the control bytes of a group
+	 * @return a long with the highest bit of each empty or deleted byte set
+	 */
+	private static long matchFree(final long theControl) {
+		return theControl & MSBS;
+	}
+	
+	/**
+	 * This mixes all bits of a hash code, using the finalizer of MurmurHash3,
+	 * so both the group index and the 7-bit tag depend on every bit.
+	 * 
+	 * @param theHash is the hash code
+	 * @return the mixed hash code
+	 */
+	private static int spread(final int theHash) {
+		int h = theHash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		result.append("[");
+		int commaNum = myEntryNum - 1;
+		
+		for (int i = 0; i < myCapacity; i++) {
+			if (myControl[i] >= 0) {
+				result.append("(");
+				result.append(myKeys[i]);
+				result.append(", ");
+				result.append(myValues[i]);
+				result.append(")");
+				
+				if (commaNum > 0) {
+					result.append(", ");
+					commaNum--;
+				}
+			}
+		}
+		
+		result.append("]");
+		return result.toString();
+	}
+}
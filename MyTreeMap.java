@@ -0,0 +1,308 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+
+/**
+ * This is a self-balancing binary search tree mapping keys to values, kept in
+ * the order of the keys. It is balanced the same way as MyBinarySearchTree,
+ * but each key is kept at most once: putting a key that is already in the map
+ * replaces its value instead of adding another node. Keys are ordered by a
+ * given comparator, or by their natural order when none is given.
+ * 
+ * @author Qing Bai
+ */
+public class MyTreeMap<K, V> {
+	
+	/**
+	 * This is the comparator ordering the keys, or null for natural order.
+	 */
+	private final Comparator<? super K> comparator;
+	
+	/**
+	 * This is the root of this map.
+	 */
+	private Node<K, V> root;
+	
+	/**
+	 * This is the number of entries in this map.
+	 */
+	private int size;
+	
+	/**
+	 * This is a stack of the nodes on the path from the root, reused by put
+	 * and remove.
+	 */
+	private Node<K, V>[] path;
+	
+	/**
+	 * This is a constructor of this map ordering keys by their natural order.
+	 */
+	public MyTreeMap() {
+		this(null);
+	}
+	
+	/**
+	 * This is a constructor of this map ordering keys by a given comparator.
+	 * 
+	 * @param comparator is the given comparator, or null for natural order
+	 */
+	@SuppressWarnings("unchecked")
+	public MyTreeMap(Comparator<? super K> comparator) {
+		this.comparator = comparator;
+		this.root = null;
+		this.size = 0;
+		this.path = (Node<K, V>[]) new Node<?, ?>[8];
+	}
+	
+	/**
+	 * This maps a given key to a given value. If the key is already in this
+	 * map, only its value is replaced.
+	 * 
+	 * @param key is the given key
+	 * @param value is the given value
+	 * @return the old value of the key, or null if the key was not in the map
+	 */
+	public V put(K key, V value) {
+		Node<K, V> node = this.root;
+		int size = 0;
+		int cmp = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null) {
+			cmp = compare(key, node.key);
+			
+			if (cmp == 0) {
+				V old = node.value;
+				node.value = value;
+				Arrays.fill(path, 0, size, null);
+				return old;
+			}
+			
+			path[size++] = node;
+			node = cmp < 0 ? node.leftChild : node.rightChild;
+		}
+		
+		node = new Node<K, V>(key, value);
+		
+		if (size == 0) {
+			this.root = node;
+		} else if (cmp < 0) {
+			path[size - 1].leftChild = node;
+		} else {
+			path[size - 1].rightChild = node;
+		}
+		
+		this.size++;
+		this.root = AvlNode.rebalancePath(path, size, this.root);
+		return null;
+	}
+	
+	/**
+	 * This finds the value of a given key.
+	 * 
+	 * @param key is the given key
+	 * @return the value of the key, or null if the key is not in this map
+	 */
+	public V get(K key) {
+		Node<K, V> node = find(key);
+		return node == null ? null : node.value;
+	}
+	
+	/**
+	 * This checks whether or not a given key is in this map.
+	 * 
+	 * @param key is the given key
+	 * @return true if the key is in the map, otherwise, false
+	 */
+	public boolean containsKey(K key) {
+		return find(key) != null;
+	}
+	
+	/**
+	 * This removes a given key and its value from this map if the key exists.
+	 * A node with two children takes the entry of the maximum key of its left
+	 * subtree, and the node that held that entry is removed instead.
+	 * 
+	 * @param key is the given key
+	 * @return the value of the key, or null if the key was not in the map
+	 */
+	public V remove(K key) {
+		Node<K, V> node = this.root;
+		int size = 0;
+		path = AvlNode.ensurePath(path, this.root);
+		
+		while (node != null) {
+			int cmp = compare(key, node.key);
+			
+			if (cmp == 0) {
+				break;
+			}
+			
+			path[size++] = node;
+			node = cmp < 0 ? node.leftChild : node.rightChild;
+		}
+		
+		if (node == null) {
+			Arrays.fill(path, 0, size, null);
+			return null;
+		}
+		
+		V old = node.value;
+		
+		if (node.leftChild != null && node.rightChild != null) {
+			Node<K, V> target = node;
+			path[size++] = target;
+			node = target.leftChild;
+			
+			while (node.rightChild != null) {
+				path[size++] = node;
+				node = node.rightChild;
+			}
+			
+			target.key = node.key;
+			target.value = node.value;
+		}
+		
+		Node<K, V> child = node.leftChild != null ? node.leftChild : node.rightChild;
+		
+		if (size == 0) {
+			this.root = child;
+		} else if (path[size - 1].leftChild == node) {
+			path[size - 1].leftChild = child;
+		} else {
+			path[size - 1].rightChild = child;
+		}
+		
+		this.size--;
+		this.root = AvlNode.rebalancePath(path, size, this.root);
+		return old;
+	}
+	
+	/**
+	 * This finds out the number of entries in this map.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * This finds the depth of this map.
+	 * 
+	 * @return an integer for the depth of this map.
+	 */
+	public int depth() {
+		return this.root == null ? 0 : this.root.height + 1;
+	}
+	
+	/**
+	 * This passes every entry to a given action in the order of the keys.
+	 * 
+	 * @param action is the action taking each key and value
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Node<K, V>[] stack = (Node<K, V>[]) new Node<?, ?>[this.root == null ? 0 : this.root.height + 1];
+		Node<K, V> node = this.root;
+		int size = 0;
+		
+		while (node != null || size > 0) {
+			while (node != null) {
+				stack[size++] = node;
+				node = node.leftChild;
+			}
+			
+			node = stack[--size];
+			action.accept(node.key, node.value);
+			node = node.rightChild;
+		}
+	}
+	
+	/**
+	 * This returns the entries in this map in the order of the keys.
+	 * 
+	 * @return a String containing the entries
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		
+		forEach((key, value) -> {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			
+			result.append("(").append(key).append(", ").append(value).append(")");
+		});
+		
+		result.append("]");
+		return result.toString();
+	}
+	
+	/**
+	 * This finds the node of a given key.
+	 * 
+	 * @param key is the given key
+	 * @return the node, or null if the key is not in this map
+	 */
+	private Node<K, V> find(K key) {
+		Node<K, V> node = this.root;
+		
+		while (node != null) {
+			int cmp = compare(key, node.key);
+			
+			if (cmp == 0) {
+				return node;
+			}
+			
+			node = cmp < 0 ? node.leftChild : node.rightChild;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This compares two keys with the comparator of this map, or by their
+	 * natural order.
+	 * 
+	 * @param key is the first key
+	 * @param other is the second key
+	 * @return a negative number, zero or a positive number as the first key
+	 * is less than, equal to or greater than the second one
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(K key, K other) {
+		if (this.comparator != null) {
+			return this.comparator.compare(key, other);
+		}
+		
+		return ((Comparable<? super K>) key).compareTo(other);
+	}
+	
+	/**
+	 * This is a private class used for creating nodes of this map.
+	 */
+	private static class Node<K, V> extends AvlNode<Node<K, V>> {
+		
+		/**
+		 * This is a key saved in this node.
+		 */
+		private K key;
+		
+		/**
+		 * This is the value of the key.
+		 */
+		private V value;
+		
+		/**
+		 * This is a constructor of this node.
+		 * 
+		 * @param key is a key stored in the node
+		 * @param value is the value of the key
+		 */
+		private Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
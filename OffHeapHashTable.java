@@ -0,0 +1,720 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This is a hash table mapping byte[] keys to byte[] values, with strings
+ * accepted as UTF-8 bytes. Slots and entries live in direct buffers outside
+ * the Java heap, so the garbage collector sees a handful of buffer objects
+ * whatever the number of entries. Keys are compared as raw bytes, and the
+ * slots are probed linearly as in MyHashTable.
+ * 
+ * A slot holds the address of its record, the hash code of the key and the
+ * key length plus one, which is 0 for an empty slot. Records are appended to
+ * an arena of buffers and hold the key length, the value length, the key and
+ * the value. The space of removed or replaced records is taken back by
+ * copying the live records into a new arena once more than half of it is
+ * garbage. The buffers are freed when the table itself is collected.
+ * 
+ * @author Qing Bai
+ */
+public class OffHeapHashTable {
+	
+	/**
+	 * This is the maximum fill ratio before the slots grow.
+	 */
+	private static final double LOAD_FACTOR = 0.75;
+	
+	/**
+	 * This is the size of a slot in bytes.
+	 */
+	private static final int SLOT_BYTES = 16;
+	
+	/**
+	 * This is the number of bits of a slot index within one slot buffer.
+	 */
+	private static final int SLOT_CHUNK_BITS = 26;
+	
+	/**
+	 * This is the size of a buffer of the arena in bytes, unless a record
+	 * needs a larger one.
+	 */
+	private static final int ARENA_CHUNK = 1 << 20;
+	
+	/**
+	 * This is the size of the lengths at the start of a record in bytes.
+	 */
+	private static final int RECORD_HEADER = 8;
+	
+	/**
+	 * This reads eight bytes of a key at once, in the byte order of buffers.
+	 */
+	private static final VarHandle LONGS =
+			MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	
+	/**
+	 * This is the buffers of slots.
+	 */
+	private ByteBuffer[] mySlots;
+	
+	/**
+	 * This is the number of slots, a power of two.
+	 */
+	private int myCapacity;
+	
+	/**
+	 * This is the buffers of the arena holding records.
+	 */
+	private ByteBuffer[] myArena;
+	
+	/**
+	 * This is the number of buffers of the arena in use.
+	 */
+	private int myArenaChunks;
+	
+	/**
+	 * This is the number of bytes appended to the arena.
+	 */
+	private long myArenaBytes;
+	
+	/**
+	 * This is the number of bytes of the arena held by live records.
+	 */
+	private long myLiveBytes;
+	
+	/**
+	 * This records number of entries.
+	 */
+	private int myEntryNum;
+	
+	/**
+	 * This is histogram of probes, where element i counts the entries placed
+	 * after i + 1 probes.
+	 */
+	private int[] myHistogram;
+	
+	/**
+	 * This records the maxmium probe length spent on one entry.
+	 */
+	private int myProbMax;
+	
+	/**
+	 * This records sum of probe lengthes of all entries.
+	 */
+	private long myProbSum;
+	
+	/**
+	 * This records sum of squared probe lengthes of all entries.
+	 */
+	private long myProbSquareSum;
+	
+	/**
+	 * This records number of gets that found their key.
+	 */
+	private long myHits;
+	
+	/**
+	 * This records number of gets that didn't find their key.
+	 */
+	private long myMisses;
+	
+	/**
+	 * This builds a hash table with a given initial capacity.
+	 * 
+	 * @param theCapacity is the given capacity
+	 */
+	public OffHeapHashTable(final int theCapacity) {
+		if (theCapacity < 1 || theCapacity > 1 << 30) {
+			throw new IllegalArgumentException();
+		}
+		
+		initSlots(Math.max(2, Integer.highestOneBit(theCapacity - 1) << 1));
+		myArena = new ByteBuffer[4];
+		myArenaChunks = 0;
+		myArenaBytes = 0;
+		myLiveBytes = 0;
+		myEntryNum = 0;
+		myHits = 0;
+		myMisses = 0;
+	}
+	
+	/**
+	 * This sets up empty slots of a given capacity.
+	 * 
+	 * @param theCapacity is the capacity, a power of two
+	 */
+	private void initSlots(final int theCapacity) {
+		final int perChunk = 1 << SLOT_CHUNK_BITS;
+		mySlots = new ByteBuffer[(theCapacity + perChunk - 1) >>> SLOT_CHUNK_BITS];
+		
+		for (int i = 0; i < mySlots.length; i++) {
+			mySlots[i] = ByteBuffer.allocateDirect(Math.min(perChunk, theCapacity) * SLOT_BYTES);
+		}
+		
+		myCapacity = theCapacity;
+		myHistogram = new int[8];
+		myProbMax = 0;
+		myProbSum = 0;
+		myProbSquareSum = 0;
+	}
+	
+	/**
+	 * This adds or updates a new value for a given key. A value of the same
+	 * length as the old one is written over it in place.
+	 * 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 */
+	public void put(final byte[] theKey, final byte[] theValue) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		final int h = Arrays.hashCode(theKey);
+		final int i = find(h, theKey);
+		
+		if (i >= 0) {
+			final long address = address(i);
+			final ByteBuffer chunk = myArena[(int) (address >>> 32)];
+			final int position = (int) address;
+			
+			if (chunk.getInt(position + 4) == theValue.length) {
+				chunk.put(position + RECORD_HEADER + theKey.length, theValue);
+			} else {
+				myLiveBytes -= recordSize(chunk, position);
+				setAddress(i, append(theKey, theValue));
+			}
+		} else {
+			final int slot = -i - 1;
+			final ByteBuffer slots = mySlots[slot >>> SLOT_CHUNK_BITS];
+			final int position = slotPosition(slot);
+			slots.putLong(position, append(theKey, theValue));
+			slots.putInt(position + 8, h);
+			slots.putInt(position + 12, theKey.length + 1);
+			recordStats(distance(index(h), slot) + 1);
+			myEntryNum++;
+			
+			if (myEntryNum > myCapacity * LOAD_FACTOR) {
+				resize();
+			}
+		}
+		
+		if (myArenaBytes - myLiveBytes > Math.max(myLiveBytes, ARENA_CHUNK)) {
+			compact();
+		}
+	}
+	
+	/**
+	 * This adds or updates a new value for a given key, both stored as UTF-8
+	 * bytes.
+	 * 
+	 * @param theKey is the given key
+	 * @param theValue is the value
+	 */
+	public void put(final String theKey, final String theValue) {
+		if (theKey == null || theValue == null) {
+			throw new IllegalArgumentException();
+		}
+		
+		put(theKey.getBytes(StandardCharsets.UTF_8), theValue.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * This searches a given key and returns a copy of its value. if the key
+	 * doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	public byte[] get(final byte[] theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int i = find(Arrays.hashCode(theKey), theKey);
+		
+		if (i < 0) {
+			myMisses++;
+			return null;
+		}
+		
+		myHits++;
+		return value(address(i));
+	}
+	
+	/**
+	 * This searches a given key and returns its value, both stored as UTF-8
+	 * bytes. if the key doesn't exist, null is returned.
+	 * 
+	 * @param theKey is the given key
+	 * @return a value for the key or null if the key doesn't exist
+	 */
+	public String get(final String theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final byte[] value = get(theKey.getBytes(StandardCharsets.UTF_8));
+		return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+	}
+	
+	/**
+	 * This checks whether or not a given key exists in this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final byte[] theKey) {
+		return theKey != null && find(Arrays.hashCode(theKey), theKey) >= 0;
+	}
+	
+	/**
+	 * This checks whether or not a given key, stored as UTF-8 bytes, exists in
+	 * this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return true if exists. Otherwise, false.
+	 */
+	public boolean containsKey(final String theKey) {
+		return theKey != null && containsKey(theKey.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * This removes a given key and its value from this hash table. Slots
+	 * following the removed one in its probe chain are shifted back.
+	 * 
+	 * @param theKey is the given key
+	 * @return the value removed or null if the key doesn't exist
+	 */
+	public byte[] remove(final byte[] theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final int h = Arrays.hashCode(theKey);
+		final int i = find(h, theKey);
+		
+		if (i < 0) {
+			return null;
+		}
+		
+		final long address = address(i);
+		final byte[] value = value(address);
+		myLiveBytes -= recordSize(myArena[(int) (address >>> 32)], (int) address);
+		unrecordStats(distance(index(h), i) + 1);
+		shiftBack(i);
+		myEntryNum--;
+		return value;
+	}
+	
+	/**
+	 * This removes a given key and its value, both stored as UTF-8 bytes,
+	 * from this hash table.
+	 * 
+	 * @param theKey is the given key
+	 * @return the value removed or null if the key doesn't exist
+	 */
+	public String remove(final String theKey) {
+		if (theKey == null) {
+			return null;
+		}
+		
+		final byte[] value = remove(theKey.getBytes(StandardCharsets.UTF_8));
+		return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+	}
+	
+	/**
+	 * This finds out the number of entries in this hash table.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return myEntryNum;
+	}
+	
+	/**
+	 * This searches a given key in the slots. Length and hash code are
+	 * compared before the bytes of the record are read.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @param theKey is the given key
+	 * @return index of the key, or (-index - 1) where index is the empty slot
+	 * ending its probe
+	 */
+	private int find(final int theHash, final byte[] theKey) {
+		int i = index(theHash);
+		ByteBuffer slots = mySlots[i >>> SLOT_CHUNK_BITS];
+		int position = slotPosition(i);
+		int length;
+		
+		while ((length = slots.getInt(position + 12)) != 0) {
+			if (length == theKey.length + 1 && slots.getInt(position + 8) == theHash
+					&& keyEquals(slots.getLong(position), theKey)) {
+				return i;
+			}
+			
+			i = (i + 1) & (myCapacity - 1);
+			slots = mySlots[i >>> SLOT_CHUNK_BITS];
+			position = slotPosition(i);
+		}
+		
+		return -i - 1;
+	}
+	
+	/**
+	 * This compares the key of a record with a given key of the same length,
+	 * eight bytes at a time.
+	 * 
+	 * @param theAddress is the address of the record
+	 * @param theKey is the given key
+	 * @return true if they are equal. Otherwise, false.
+	 */
+	private boolean keyEquals(final long theAddress, final byte[] theKey) {
+		final ByteBuffer chunk = myArena[(int) (theAddress >>> 32)];
+		final int position = (int) theAddress + RECORD_HEADER;
+		int j = 0;
+		
+		for (; j + 8 <= theKey.length; j += 8) {
+			if (chunk.getLong(position + j) != (long) LONGS.get(theKey, j)) {
+				return false;
+			}
+		}
+		
+		for (; j < theKey.length; j++) {
+			if (chunk.get(position + j) != theKey[j]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * This appends a record to the arena, starting a new buffer if the last
+	 * one is too full.
+	 * 
+	 * @param theKey is the key
+	 * @param theValue is the value
+	 * @return the address of the record, made of the buffer index in the high
+	 * 32 bits and the position in the low 32 bits
+	 */
+	private long append(final byte[] theKey, final byte[] theValue) {
+		final int size = RECORD_HEADER + theKey.length + theValue.length;
+		ByteBuffer chunk = myArenaChunks > 0 ? myArena[myArenaChunks - 1] : null;
+		
+		if (chunk == null || chunk.remaining() < size) {
+			if (myArenaChunks == myArena.length) {
+				myArena = Arrays.copyOf(myArena, myArena.length * 2);
+			}
+			
+			chunk = ByteBuffer.allocateDirect(Math.max(ARENA_CHUNK, size));
+			myArena[myArenaChunks++] = chunk;
+		}
+		
+		final long address = ((long) (myArenaChunks - 1) << 32) | chunk.position();
+		chunk.putInt(theKey.length);
+		chunk.putInt(theValue.length);
+		chunk.put(theKey);
+		chunk.put(theValue);
+		myArenaBytes += size;
+		myLiveBytes += size;
+		return address;
+	}
+	
+	/**
+	 * This copies the value of a record out of the arena.
+	 * 
+	 * @param theAddress is the address of the record
+	 * @return the value
+	 */
+	private byte[] value(final long theAddress) {
+		final ByteBuffer chunk = myArena[(int) (theAddress >>> 32)];
+		final int position = (int) theAddress;
+		final byte[] value = new byte[chunk.getInt(position + 4)];
+		chunk.get(position + RECORD_HEADER + chunk.getInt(position), value);
+		return value;
+	}
+	
+	/**
+	 * This finds out the size of a record in bytes.
+	 * 
+	 * @param theChunk is the buffer holding the record
+	 * @param thePosition is the position of the record
+	 * @return the size of the record
+	 */
+	private static int recordSize(final ByteBuffer theChunk, final int thePosition) {
+		return RECORD_HEADER + theChunk.getInt(thePosition) + theChunk.getInt(thePosition + 4);
+	}
+	
+	/**
+	 * This finds out the address of the record of a given slot.
+	 * 
+	 * @param theIndex is the index of an occupied slot
+	 * @return the address of the record
+	 */
+	private long address(final int theIndex) {
+		return mySlots[theIndex >>> SLOT_CHUNK_BITS].getLong(slotPosition(theIndex));
+	}
+	
+	/**
+	 * This points a given slot at another record.
+	 * 
+	 * @param theIndex is the index of an occupied slot
+	 * @param theAddress is the address of the record
+	 */
+	private void setAddress(final int theIndex, final long theAddress) {
+		mySlots[theIndex >>> SLOT_CHUNK_BITS].putLong(slotPosition(theIndex), theAddress);
+	}
+	
+	/**
+	 * This finds out the hash code kept in a given slot.
+	 * 
+	 * @param theIndex is the index of an occupied slot
+	 * @return the hash code of the key
+	 */
+	private int hashAt(final int theIndex) {
+		return mySlots[theIndex >>> SLOT_CHUNK_BITS].getInt(slotPosition(theIndex) + 8);
+	}
+	
+	/**
+	 * This finds out where a given slot starts within its slot buffer.
+	 * 
+	 * @param theIndex is the index of the slot
+	 * @return the position of the slot
+	 */
+	private static int slotPosition(final int theIndex) {
+		return (theIndex & ((1 << SLOT_CHUNK_BITS) - 1)) * SLOT_BYTES;
+	}
+	
+	/**
+	 * This copies one slot over another.
+	 * 
+	 * @param theFrom is the index of the slot copied
+	 * @param theTo is the index of the slot written
+	 */
+	private void copySlot(final int theFrom, final int theTo) {
+		final ByteBuffer from = mySlots[theFrom >>> SLOT_CHUNK_BITS];
+		final ByteBuffer to = mySlots[theTo >>> SLOT_CHUNK_BITS];
+		final int fromPosition = slotPosition(theFrom);
+		final int toPosition = slotPosition(theTo);
+		to.putLong(toPosition, from.getLong(fromPosition));
+		to.putLong(toPosition + 8, from.getLong(fromPosition + 8));
+	}
+	
+	/**
+	 * This empties a given slot and moves back the slots after it that can
+	 * get closer to their home slots.
+	 * 
+	 * @param theIndex is the index of the slot being emptied
+	 */
+	private void shiftBack(final int theIndex) {
+		final int mask = myCapacity - 1;
+		int hole = theIndex;
+		int i = (hole + 1) & mask;
+		int home;
+		
+		while (mySlots[i >>> SLOT_CHUNK_BITS].getInt(slotPosition(i) + 12) != 0) {
+			home = index(hashAt(i));
+			
+			// an entry whose home slot lies between the hole and itself has to
+			// stay, otherwise it would be placed before its home slot
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				unrecordStats(distance(home, i) + 1);
+				recordStats(distance(home, hole) + 1);
+				copySlot(i, hole);
+				hole = i;
+			}
+			
+			i = (i + 1) & mask;
+		}
+		
+		final ByteBuffer slots = mySlots[hole >>> SLOT_CHUNK_BITS];
+		slots.putLong(slotPosition(hole), 0);
+		slots.putLong(slotPosition(hole) + 8, 0);
+	}
+	
+	/**
+	 * This moves all slots into slot buffers twice as large. The records stay
+	 * where they are, and the hash codes kept in the slots save hashing the
+	 * keys again.
+	 */
+	private void resize() {
+		if (myCapacity > 1 << 29) {
+			throw new IllegalStateException("Hash table is too large to grow");
+		}
+		
+		final ByteBuffer[] slots = mySlots;
+		final int capacity = myCapacity;
+		initSlots(capacity * 2);
+		ByteBuffer from;
+		int fromPosition;
+		int h;
+		int i;
+		
+		for (int j = 0; j < capacity; j++) {
+			from = slots[j >>> SLOT_CHUNK_BITS];
+			fromPosition = slotPosition(j);
+			
+			if (from.getInt(fromPosition + 12) != 0) {
+				h = from.getInt(fromPosition + 8);
+				i = index(h);
+				
+				while (mySlots[i >>> SLOT_CHUNK_BITS].getInt(slotPosition(i) + 12) != 0) {
+					i = (i + 1) & (myCapacity - 1);
+				}
+				
+				mySlots[i >>> SLOT_CHUNK_BITS].putLong(slotPosition(i), from.getLong(fromPosition));
+				mySlots[i >>> SLOT_CHUNK_BITS].putLong(slotPosition(i) + 8,
+						from.getLong(fromPosition + 8));
+				recordStats(distance(index(h), i) + 1);
+			}
+		}
+	}
+	
+	/**
+	 * This copies the live records into a new arena, dropping the space of
+	 * removed and replaced records, and points the slots at the copies.
+	 */
+	private void compact() {
+		final ByteBuffer[] arena = myArena;
+		myArena = new ByteBuffer[4];
+		myArenaChunks = 0;
+		myArenaBytes = 0;
+		myLiveBytes = 0;
+		long address;
+		ByteBuffer chunk;
+		int position;
+		byte[] key;
+		byte[] value;
+		
+		for (int i = 0; i < myCapacity; i++) {
+			if (mySlots[i >>> SLOT_CHUNK_BITS].getInt(slotPosition(i) + 12) != 0) {
+				address = address(i);
+				chunk = arena[(int) (address >>> 32)];
+				position = (int) address;
+				key = new byte[chunk.getInt(position)];
+				value = new byte[chunk.getInt(position + 4)];
+				chunk.get(position + RECORD_HEADER, key);
+				chunk.get(position + RECORD_HEADER + key.length, value);
+				setAddress(i, append(key, value));
+			}
+		}
+	}
+	
+	/**
+	 * This records and updates max probe length, sum of probes, and histrogram
+	 * of probes for a key placed in the slots.
+	 * 
+	 * @param theProbeTimes is number of probes spent on finding a location for
+	 * the key
+	 */
+	private void recordStats(final int theProbeTimes) {
+		if (theProbeTimes > myHistogram.length) {
+			myHistogram = Arrays.copyOf(myHistogram,
+					Math.max(theProbeTimes, myHistogram.length * 2));
+		}
+		
+		myHistogram[theProbeTimes - 1]++;
+		myProbSum += theProbeTimes;
+		myProbSquareSum += (long) theProbeTimes * theProbeTimes;
+		
+		if (theProbeTimes > myProbMax) {
+			myProbMax = theProbeTimes;
+		}
+	}
+	
+	/**
+	 * This takes a key that leaves its slot out of max probe length, sum of
+	 * probes, and histrogram of probes.
+	 * 
+	 * @param theProbeTimes is number of probes the key had been recorded with
+	 */
+	private void unrecordStats(final int theProbeTimes) {
+		myHistogram[theProbeTimes - 1]--;
+		myProbSum -= theProbeTimes;
+		myProbSquareSum -= (long) theProbeTimes * theProbeTimes;
+		
+		while (myProbMax > 0 && myHistogram[myProbMax - 1] == 0) {
+			myProbMax--;
+		}
+	}
+	
+	/**
+	 * This displays statistics for the data in the hash table, in the same
+	 * form as MyHashTable.
+	 */
+	public void stats() {
+		final int[] histogram = Arrays.copyOf(myHistogram, myProbMax);
+		System.out.println("Hash Table Stats");
+		System.out.println("================================");
+		System.out.printf("Number of Entries: %d\n", myEntryNum);
+		System.out.printf("Number of Buckets: %d\n", myCapacity);
+		System.out.print("Histogram of Probes: ");
+		System.out.println(Arrays.toString(histogram));
+		System.out.printf("Fill Percentage: %.6f%%\n", myEntryNum * 100.0 / myCapacity);
+		System.out.printf("Max Linear Prob: %d\n", myProbMax);
+		System.out.printf("Average Linear Prob: %.6f\n", myProbSum * 1.0 / myEntryNum);
+		
+		final double average = myProbSum * 1.0 / myEntryNum;
+		System.out.printf("Linear Prob Variance: %.6f\n",
+				myProbSquareSum * 1.0 / myEntryNum - average * average);
+		System.out.printf("99th Percentile Linear Prob: %d\n", percentile(histogram, 0.99));
+		System.out.printf("Hits: %d\n", myHits);
+		System.out.printf("Misses: %d\n", myMisses);
+	}
+	
+	/**
+	 * This finds out the probe length that a given fraction of entries don't
+	 * exceed.
+	 * 
+	 * @param theHistogram is histogram of probes indexed by probe length - 1
+	 * @param theFraction is the fraction of entries, between 0 and 1
+	 * @return the smallest probe length covering the fraction of entries
+	 */
+	private int percentile(final int[] theHistogram, final double theFraction) {
+		final long target = (long) Math.ceil(myEntryNum * theFraction);
+		long count = 0;
+		
+		for (int i = 0; i < theHistogram.length; i++) {
+			count += theHistogram[i];
+			
+			if (count >= target) {
+				return i + 1;
+			}
+		}
+		
+		return theHistogram.length;
+	}
+	
+	/**
+	 * This determines the home slot of a key with a given hash code. The hash
+	 * code is mixed with the finalizer of MurmurHash3 first, so the low bits
+	 * used by the mask depend on all of its bits.
+	 * 
+	 * @param theHash is the hash code of the key
+	 * @return index of the slot in where this key should be placed
+	 */
+	private int index(final int theHash) {
+		int h = theHash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return (h ^ (h >>> 16)) & (myCapacity - 1);
+	}
+	
+	/**
+	 * This finds out how many slots a given index is away from a home slot
+	 * going forward in the slots.
+	 * 
+	 * @param theHome is the home slot
+	 * @param theIndex is the given index
+	 * @return number of slots between them
+	 */
+	private int distance(final int theHome, final int theIndex) {
+		return (theIndex - theHome) & (myCapacity - 1);
+	}
+}
@@ -0,0 +1,388 @@
+import java.util.Arrays;
+
+/**
+ * This is a snapshot of the statistics of a MyHashTable, taken by
+ * MyHashTable.snapshot. It holds copies of the counters, so it can be kept,
+ * compared with later snapshots or handed to another thread while the table
+ * keeps changing.
+ * 
+ * The histogram of probes counts the entries living in the table by how far
+ * they are from their home slots. Puts and gets count the slots each call
+ * looked at in the array before finding its key or an empty slot. Clusters
+ * are runs of occupied slots between two empty ones, and are only counted
+ * when asked for since that takes a scan over all slots.
+ * 
+ * While the table is resizing, the histogram of probes only holds the
+ * entries already moved into the new array, so the averages and percentiles
+ * of probes are taken over those entries.
+ * 
+ * @author Qing Bai
+ */
+public class StatsSnapshot {
+	
+	/**
+	 * This records number of entries.
+	 */
+	private final int myEntryNum;
+	
+	/**
+	 * This is the number of slots.
+	 */
+	private final int myCapacity;
+	
+	/**
+	 * This is histogram of probes, where element i counts the entries placed
+	 * after i + 1 probes.
+	 */
+	private final int[] myHistogram;
+	
+	/**
+	 * This records sum of probe lengthes of all entries.
+	 */
+	private final long myProbSum;
+	
+	/**
+	 * This records sum of squared probe lengthes of all entries.
+	 */
+	private final long myProbSquareSum;
+	
+	/**
+	 * This records number of puts.
+	 */
+	private final long myPutNum;
+	
+	/**
+	 * This records sum of probe lengthes of all puts.
+	 */
+	private final long myPutProbSum;
+	
+	/**
+	 * This records the maximum probe length of one put.
+	 */
+	private final int myPutProbMax;
+	
+	/**
+	 * This records number of gets.
+	 */
+	private final long myGetNum;
+	
+	/**
+	 * This records sum of probe lengthes of all gets.
+	 */
+	private final long myGetProbSum;
+	
+	/**
+	 * This records the maximum probe length of one get.
+	 */
+	private final int myGetProbMax;
+	
+	/**
+	 * This records number of gets that found their key.
+	 */
+	private final long myHits;
+	
+	/**
+	 * This records number of gets that didn't find their key.
+	 */
+	private final long myMisses;
+	
+	/**
+	 * This is the maximum number of entries, or 0 for no bound.
+	 */
+	private final int myMaxEntries;
+	
+	/**
+	 * This records number of entries evicted.
+	 */
+	private final long myEvictions;
+	
+	/**
+	 * This is the number of entries counted by the histogram of probes.
+	 */
+	private final long myPlacedNum;
+	
+	/**
+	 * This is histogram of clusters, where element i counts the clusters of
+	 * i + 1 slots, or null if clusters weren't counted.
+	 */
+	private final int[] myClusters;
+	
+	/**
+	 * This creates a snapshot from given counters. The arrays are kept, so
+	 * they must be copies.
+	 * 
+	 * @param theEntryNum is the number of entries
+	 * @param theCapacity is the number of slots
+	 * @param theHistogram is the histogram of probes
+	 * @param theProbSum is the sum of probe lengthes of all entries
+	 * @param theProbSquareSum is the sum of squared probe lengthes
+	 * @param thePutNum is the number of puts
+	 * @param thePutProbSum is the sum of probe lengthes of all puts
+	 * @param thePutProbMax is the maximum probe length of one put
+	 * @param theGetNum is the number of gets
+	 * @param theGetProbSum is the sum of probe lengthes of all gets
+	 * @param theGetProbMax is the maximum probe length of one get
+	 * @param theHits is the number of gets that found their key
+	 * @param theMisses is the number of gets that didn't find their key
+	 * @param theMaxEntries is the maximum number of entries, or 0
+	 * @param theEvictions is the number of entries evicted
+	 * @param theClusters is the histogram of clusters, or null if clusters
+	 * weren't counted
+	 */
+	StatsSnapshot(final int theEntryNum, final int theCapacity, final int[] theHistogram,
+			final long theProbSum, final long theProbSquareSum, final long thePutNum,
+			final long thePutProbSum, final int thePutProbMax, final long theGetNum,
+			final long theGetProbSum, final int theGetProbMax, final long theHits,
+			final long theMisses, final int theMaxEntries, final long theEvictions,
+			final int[] theClusters) {
+		myEntryNum = theEntryNum;
+		myCapacity = theCapacity;
+		myHistogram = theHistogram;
+		myProbSum = theProbSum;
+		myProbSquareSum = theProbSquareSum;
+		myPutNum = thePutNum;
+		myPutProbSum = thePutProbSum;
+		myPutProbMax = thePutProbMax;
+		myGetNum = theGetNum;
+		myGetProbSum = theGetProbSum;
+		myGetProbMax = theGetProbMax;
+		myHits = theHits;
+		myMisses = theMisses;
+		myMaxEntries = theMaxEntries;
+		myEvictions = theEvictions;
+		myClusters = theClusters;
+		long placedNum = 0;
+		
+		for (int count : theHistogram) {
+			placedNum += count;
+		}
+		
+		myPlacedNum = placedNum;
+	}
+	
+	/**
+	 * This finds out the number of entries.
+	 * 
+	 * @return the number of entries
+	 */
+	public int entries() {
+		return myEntryNum;
+	}
+	
+	/**
+	 * This finds out the number of slots.
+	 * 
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return myCapacity;
+	}
+	
+	/**
+	 * This finds out the fraction of slots holding an entry.
+	 * 
+	 * @return the fill ratio, between 0 and 1
+	 */
+	public double fillRatio() {
+		return myEntryNum * 1.0 / myCapacity;
+	}
+	
+	/**
+	 * This gives the histogram of probes, where element i counts the entries
+	 * placed after i + 1 probes.
+	 * 
+	 * @return a copy of the histogram
+	 */
+	public int[] histogram() {
+		return myHistogram.clone();
+	}
+	
+	/**
+	 * This finds out the maximum probe length of an entry.
+	 * 
+	 * @return the maximum probe length
+	 */
+	public int maxProbe() {
+		return myHistogram.length;
+	}
+	
+	/**
+	 * This finds out the average probe length of the entries.
+	 * 
+	 * @return the average probe length
+	 */
+	public double averageProbe() {
+		return myProbSum * 1.0 / myPlacedNum;
+	}
+	
+	/**
+	 * This finds out the variance of the probe lengthes of the entries.
+	 * 
+	 * @return the variance
+	 */
+	public double probeVariance() {
+		final double average = averageProbe();
+		return myProbSquareSum * 1.0 / myPlacedNum - average * average;
+	}
+	
+	/**
+	 * This finds out the probe length that a given fraction of entries don't
+	 * exceed.
+	 * 
+	 * @param theFraction is the fraction of entries, between 0 and 1
+	 * @return the smallest probe length covering the fraction of entries
+	 */
+	public int percentile(final double theFraction) {
+		final long target = (long) Math.ceil(myPlacedNum * theFraction);
+		long count = 0;
+		
+		for (int i = 0; i < myHistogram.length; i++) {
+			count += myHistogram[i];
+			
+			if (count >= target) {
+				return i + 1;
+			}
+		}
+		
+		return myHistogram.length;
+	}
+	
+	/**
+	 * This finds out the number of puts.
+	 * 
+	 * @return the number of puts
+	 */
+	public long puts() {
+		return myPutNum;
+	}
+	
+	/**
+	 * This finds out the average probe length of the puts.
+	 * 
+	 * @return the average probe length
+	 */
+	public double averagePutProbe() {
+		return myPutProbSum * 1.0 / myPutNum;
+	}
+	
+	/**
+	 * This finds out the maximum probe length of one put.
+	 * 
+	 * @return the maximum probe length
+	 */
+	public int maxPutProbe() {
+		return myPutProbMax;
+	}
+	
+	/**
+	 * This finds out the number of gets.
+	 * 
+	 * @return the number of gets
+	 */
+	public long gets() {
+		return myGetNum;
+	}
+	
+	/**
+	 * This finds out the average probe length of the gets.
+	 * 
+	 * @return the average probe length
+	 */
+	public double averageGetProbe() {
+		return myGetProbSum * 1.0 / myGetNum;
+	}
+	
+	/**
+	 * This finds out the maximum probe length of one get.
+	 * 
+	 * @return the maximum probe length
+	 */
+	public int maxGetProbe() {
+		return myGetProbMax;
+	}
+	
+	/**
+	 * This finds out the number of gets that found their key.
+	 * 
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return myHits;
+	}
+	
+	/**
+	 * This finds out the number of gets that didn't find their key.
+	 * 
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return myMisses;
+	}
+	
+	/**
+	 * This finds out the number of entries evicted.
+	 * 
+	 * @return the number of evictions
+	 */
+	public long evictions() {
+		return myEvictions;
+	}
+	
+	/**
+	 * This gives the histogram of clusters, where element i counts the runs
+	 * of i + 1 occupied slots.
+	 * 
+	 * @return a copy of the histogram, or null if clusters weren't counted
+	 */
+	public int[] clusters() {
+		return myClusters == null ? null : myClusters.clone();
+	}
+	
+	/**
+	 * This finds out the length of the longest cluster.
+	 * 
+	 * @return the longest cluster length, or -1 if clusters weren't counted
+	 */
+	public int maxCluster() {
+		return myClusters == null ? -1 : myClusters.length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		result.append("Hash Table Stats\n");
+		result.append("================================\n");
+		result.append(String.format("Number of Entries: %d\n", myEntryNum));
+		result.append(String.format("Number of Buckets: %d\n", myCapacity));
+		result.append("Histogram of Probes: ");
+		result.append(Arrays.toString(myHistogram));
+		result.append("\n");
+		result.append(String.format("Fill Percentage: %.6f%%\n", fillRatio() * 100));
+		result.append(String.format("Max Linear Prob: %d\n", maxProbe()));
+		result.append(String.format("Average Linear Prob: %.6f\n", averageProbe()));
+		result.append(String.format("Linear Prob Variance: %.6f\n", probeVariance()));
+		result.append(String.format("99th Percentile Linear Prob: %d\n", percentile(0.99)));
+		result.append(String.format("Max Put Prob: %d\n", myPutProbMax));
+		result.append(String.format("Average Put Prob: %.6f\n", averagePutProbe()));
+		result.append(String.format("Max Get Prob: %d\n", myGetProbMax));
+		result.append(String.format("Average Get Prob: %.6f\n", averageGetProbe()));
+		
+		if (myClusters != null) {
+			result.append("Histogram of Clusters: ");
+			result.append(Arrays.toString(myClusters));
+			result.append("\n");
+		}
+		
+		result.append(String.format("Hits: %d\n", myHits));
+		result.append(String.format("Misses: %d\n", myMisses));
+		
+		if (myMaxEntries > 0) {
+			result.append(String.format("Max Entries: %d\n", myMaxEntries));
+			result.append(String.format("Evictions: %d\n", myEvictions));
+		}
+		
+		return result.toString();
+	}
+}